@@ -10,12 +10,31 @@ DB_CREATE_TABLES_PAPER_PATH="${SCRIPT_DIR}/analysis/create-tables-paper.sql"
 BASE_JAR_PATH="${SCRIPT_DIR}/build/libs/ARDiff-base-1.0-SNAPSHOT-all.jar"
 DIFF_JAR_PATH="${SCRIPT_DIR}/build/libs/ARDiff-diff-1.0-SNAPSHOT-all.jar"
 
+DAEMON_JOBS_PATH="${SCRIPT_DIR}/daemon-jobs.txt"
+ORCHESTRATOR_JOBS_PATH="${SCRIPT_DIR}/orchestrator-jobs.txt"
+
 dry_run=false
 
 clean_db=false
 force_build=false
 print_commands=true
 
+# Run all benchmarks in a single, long-lived JVM (see differencing.BenchmarkDaemon)
+# instead of starting a new JVM per run. The JVM is only restarted after a timeout.
+use_daemon=false
+
+# Run the benchmarks in parallel, each in its own JVM (see differencing.BenchmarkOrchestrator).
+# Set resume_orchestrator=true to only run the jobs that an earlier, interrupted sweep didn't finish.
+use_orchestrator=false
+resume_orchestrator=false
+orchestrator_parallelism=$(nproc)
+orchestrator_memory_limit="4g"
+
+# Additional JVM options for all runs, e.g., to enable optional features for a
+# sweep and compare the runtimes with a sweep without them:
+# java_options="-Ddifferencing.state-matching=true"
+java_options=""
+
 depth_limits=(
   "10"
 )
@@ -287,6 +306,17 @@ seconds_at_start=$SECONDS
 current_run=1
 total_runs=${#runs_settings[@]}
 
+if [ "$use_daemon" = true ]; then
+  rm -f "${DAEMON_JOBS_PATH}" "${DAEMON_JOBS_PATH}.progress"
+fi
+
+if [ "$use_orchestrator" = true ]; then
+  rm -f "${ORCHESTRATOR_JOBS_PATH}"
+  if [ "$resume_orchestrator" = false ]; then
+    rm -rf "${ORCHESTRATOR_JOBS_PATH}.progress" "${ORCHESTRATOR_JOBS_PATH}.logs"
+  fi
+fi
+
 for run_settings in "${runs_settings[@]}"; do
   IFS=',' read -r benchmark tool timeout depth_limit <<< "$run_settings"
   echo "[$(date +"%Y-%m-%d %T")] Run $((current_run++)) of ${total_runs} - Benchmark: ${benchmark}, Tool: ${tool}, Timeout: ${timeout}, Depth-Limit: ${depth_limit}"
@@ -309,31 +339,40 @@ for run_settings in "${runs_settings[@]}"; do
     continue
   fi
 
-  command=""
+  runner=""
+  arguments=""
   case $tool in
       "ARDiff-base")
-          command="timeout --verbose --foreground ${timeout}s java -jar '${BASE_JAR_PATH}' --path1 ${oldV} --path2 ${newV} --tool A --s coral --H H123 --b ${depth_limit} --t ${timeout}"
+          runner="base"
+          arguments="--path1 ${oldV} --path2 ${newV} --tool A --s coral --H H123 --b ${depth_limit} --t ${timeout}"
           ;;
       "ARDiff-diff")
-          command="timeout --verbose --foreground ${timeout}s java -jar '${DIFF_JAR_PATH}' ${directory} ARDiff ${timeout} ${depth_limit}"
+          runner="diff"
+          arguments="${directory} ARDiff ${timeout} ${depth_limit}"
           ;;
       "DSE-base")
-          command="timeout --verbose --foreground ${timeout}s java -jar '${BASE_JAR_PATH}' --path1 ${oldV} --path2 ${newV} --tool D --s coral --b ${depth_limit} --t ${timeout}"
+          runner="base"
+          arguments="--path1 ${oldV} --path2 ${newV} --tool D --s coral --b ${depth_limit} --t ${timeout}"
           ;;
       "DSE-diff")
-          command="timeout --verbose --foreground ${timeout}s java -jar '${DIFF_JAR_PATH}' ${directory} DSE ${timeout} ${depth_limit}"
+          runner="diff"
+          arguments="${directory} DSE ${timeout} ${depth_limit}"
           ;;
       "PASDA-base")
-          command="timeout --verbose --foreground ${timeout}s java -jar '${BASE_JAR_PATH}' --path1 ${oldV} --path2 ${newV} --tool P --s coral --b ${depth_limit} --t ${timeout}"
+          runner="base"
+          arguments="--path1 ${oldV} --path2 ${newV} --tool P --s coral --b ${depth_limit} --t ${timeout}"
           ;;
       "PASDA-diff")
-          command="timeout --verbose --foreground ${timeout}s java -jar '${DIFF_JAR_PATH}' ${directory} PASDA ${timeout} ${depth_limit}"
+          runner="diff"
+          arguments="${directory} PASDA ${timeout} ${depth_limit}"
           ;;
       "SE-base")
-          command="timeout --verbose --foreground ${timeout}s java -jar '${BASE_JAR_PATH}' --path1 ${oldV} --path2 ${newV} --tool S --s coral --b ${depth_limit} --t ${timeout}"
+          runner="base"
+          arguments="--path1 ${oldV} --path2 ${newV} --tool S --s coral --b ${depth_limit} --t ${timeout}"
           ;;
       "SE-diff")
-          command="timeout --verbose --foreground ${timeout}s java -jar '${DIFF_JAR_PATH}' ${directory} SE ${timeout} ${depth_limit}"
+          runner="diff"
+          arguments="${directory} SE ${timeout} ${depth_limit}"
           ;;
       *)
           echo "ERROR: Unknown tool '$tool'."
@@ -341,6 +380,24 @@ for run_settings in "${runs_settings[@]}"; do
           ;;
   esac
 
+  if [ "$runner" = "base" ]; then
+    command="timeout --verbose --foreground ${timeout}s java ${java_options} -jar '${BASE_JAR_PATH}' ${arguments}"
+  else
+    command="timeout --verbose --foreground ${timeout}s java ${java_options} -jar '${DIFF_JAR_PATH}' ${arguments}"
+  fi
+
+  if [ "$use_daemon" = true ]; then
+    mkdir -p "${directory}/instrumented"
+    echo "${runner} ${timeout} ${arguments}" >> "${DAEMON_JOBS_PATH}"
+    continue
+  fi
+
+  if [ "$use_orchestrator" = true ]; then
+    mkdir -p "${directory}/instrumented"
+    echo "${benchmark} ${tool} ${runner} ${timeout} ${arguments}" >> "${ORCHESTRATOR_JOBS_PATH}"
+    continue
+  fi
+
   if [ "$print_commands" = true ]; then
     echo "${command}"
   fi
@@ -363,6 +420,51 @@ for run_settings in "${runs_settings[@]}"; do
   printf "\n\n"
 done
 
+if [ "$use_daemon" = true ]; then
+  command="java ${java_options} -cp '${DIFF_JAR_PATH}' differencing.BenchmarkDaemon '${DAEMON_JOBS_PATH}'"
+
+  if [ "$print_commands" = true ]; then
+    echo "${command}"
+  fi
+
+  if [ "$dry_run" = false ]; then
+    # The daemon exits with code 124 if a run times out (and with another
+    # non-zero exit code if it crashes, e.g., with an OutOfMemoryError),
+    # after which it is restarted to continue with the next run. It is only
+    # given up on if it failed without even starting a run.
+    while true; do
+      started_runs=$(cat "${DAEMON_JOBS_PATH}.progress" 2> /dev/null | wc -l)
+
+      eval "${command}"
+      exit_code=$?
+
+      pkill z3
+      pkill -f RunJPF.jar
+
+      if [ $exit_code -eq 0 ]; then
+        break
+      fi
+
+      if [ "$(cat "${DAEMON_JOBS_PATH}.progress" 2> /dev/null | wc -l)" -eq "${started_runs}" ]; then
+        echo "ERROR: The daemon failed with exit code ${exit_code} before starting a run."
+        break
+      fi
+    done
+  fi
+fi
+
+if [ "$use_orchestrator" = true ]; then
+  command="java ${java_options} -cp '${DIFF_JAR_PATH}' differencing.BenchmarkOrchestrator '${ORCHESTRATOR_JOBS_PATH}' ${orchestrator_parallelism} ${orchestrator_memory_limit}"
+
+  if [ "$print_commands" = true ]; then
+    echo "${command}"
+  fi
+
+  if [ "$dry_run" = false ]; then
+    eval "${command}"
+  fi
+fi
+
 # Create "materialized views"
 
 printf "Creating materialized views ... "
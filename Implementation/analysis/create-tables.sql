@@ -85,6 +85,13 @@ CREATE TABLE IF NOT EXISTS iteration
     partition_count INTEGER,
     runtime REAL,
     errors TEXT,
+    memory_budget INTEGER,
+    peak_used_memory INTEGER,
+    execution_tree_node_count INTEGER,
+    is_execution_tree_released BOOLEAN,
+    path_state_count INTEGER,
+    path_condition_count INTEGER,
+    are_path_conditions_released BOOLEAN,
 
     PRIMARY KEY (id),
     FOREIGN KEY (run_id) REFERENCES run(id) ON DELETE CASCADE
@@ -126,6 +126,14 @@ public class JVMSystemClassLoaderInfo extends SystemClassLoaderInfo {
     Config conf = vm.getConfig();
     File[] pathElements;
 
+    // in-memory classfiles have precedence over everything that is on disk
+    String[] memoryContainers = conf.getCompactStringArray("vm.memory_classpath");
+    if (memoryContainers != null) {
+      for (String name : memoryContainers) {
+        cp.addClassFileContainer(MemoryClassFileContainer.getContainer(name));
+      }
+    }
+
     // explicit "classpath[.id]" settings have precedence
     pathElements = getPathElements(conf, "classpath", appId);
     if (pathElements != null) {
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.vm.ClassFileMatch;
+import gov.nasa.jpf.vm.ClassParseException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ClassFileContainer that serves classfiles which were created in memory
+ * (e.g. by the host application compiling classes on the fly), so that they
+ * don't have to be written to and re-read from disk.
+ *
+ * Containers are registered by name, and are added to the system classpath
+ * (in front of the 'classpath' entries) with
+ *   vm.memory_classpath = <name>[,<name>..]
+ */
+public class MemoryClassFileContainer extends JVMClassFileContainer {
+
+  static final Map<String, MemoryClassFileContainer> containers = new ConcurrentHashMap<>();
+
+  protected final Map<String, byte[]> classFiles = new ConcurrentHashMap<>();
+
+  public static MemoryClassFileContainer getContainer (String name) {
+    return containers.computeIfAbsent(name, MemoryClassFileContainer::new);
+  }
+
+  protected MemoryClassFileContainer (String name) {
+    super(name, "memory:" + name + "/");
+  }
+
+  public void putClassFile (String clsName, byte[] data) {
+    classFiles.put(clsName, data);
+  }
+
+  public byte[] getClassFile (String clsName) {
+    return classFiles.get(clsName);
+  }
+
+  public Map<String, byte[]> getClassFiles () {
+    return classFiles;
+  }
+
+  @Override
+  public ClassFileMatch getMatch (String clsName) throws ClassParseException {
+    byte[] data = classFiles.get(clsName);
+    if (data != null) {
+      return new JVMClassFileMatch(clsName, getClassURL(clsName), data);
+    }
+    return null;
+  }
+}
@@ -624,7 +624,9 @@ public abstract class Search {
   public boolean checkStateSpaceLimit () {
     Runtime rt = Runtime.getRuntime();
 
-    long avail = rt.freeMemory();
+    // freeMemory() only covers the currently committed heap, which can still
+    // grow up to maxMemory(), so we don't gc (or give up) before it has to
+    long avail = getAvailableMemory(rt);
 
     // we could also just check for a max number of states, but what really
     // limits us is the memory required to store states
@@ -632,7 +634,7 @@ public abstract class Search {
     if (avail < minFreeMemory) {
       // try to collect first
       rt.gc();
-      avail = rt.freeMemory();
+      avail = getAvailableMemory(rt);
 
       if (avail < minFreeMemory) {
         // Ok, we give up, threshold reached
@@ -642,5 +644,9 @@ public abstract class Search {
 
     return true;
   }
+
+  protected long getAvailableMemory (Runtime rt) {
+    return rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
+  }
 }
 
@@ -22,6 +22,8 @@ import gov.nasa.jpf.vm.ClassInfo;
 import gov.nasa.jpf.vm.MethodInfo;
 import gov.nasa.jpf.vm.Types;
 
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.BitSet;
 
 /**
@@ -54,6 +56,24 @@ public class MethodSpec extends FeatureSpec {
   String  sigSpec;  // this is only the argument part, including parenthesis
   BitSet  markedArgs;
 
+  // memoized match results, indexed by MethodInfo globalId / ClassInfo id. Since ids
+  // get reused (e.g. the method table is reset for each JPF run), entries are checked
+  // by identity. They only weakly refer to the matched objects, so that specs which
+  // outlive a JPF run (e.g. in listeners) don't keep its MethodInfos / ClassInfos alive.
+  // Each entry is a single reference, i.e. concurrent matches can only lose entries
+  // (and cause recomputation), not produce wrong results
+  Match[] methodMatches = new Match[0];
+  Match[] classMatches = new Match[0];
+
+  static class Match extends WeakReference<Object> {
+    final boolean isMatch;
+
+    Match (Object o, boolean isMatch){
+      super(o);
+      this.isMatch = isMatch;
+    }
+  }
+
   /**
    * factory method that includes the parser
    */
@@ -185,6 +205,22 @@ public class MethodSpec extends FeatureSpec {
   }
 
   public boolean matches (MethodInfo mi){
+    int id = mi.getGlobalId();
+    if (id < 0){ // direct calls are not in the method table
+      return computeMatches(mi);
+    }
+
+    Match match = getMemoized(methodMatches, id, mi);
+    if (match != null){
+      return match.isMatch;
+    }
+
+    boolean isMatch = computeMatches(mi);
+    methodMatches = memoize(methodMatches, id, new Match(mi, isMatch));
+    return isMatch;
+  }
+
+  protected boolean computeMatches (MethodInfo mi){
     boolean isMatch = false;
 
     ClassInfo ci = mi.getClassInfo();
@@ -210,4 +246,41 @@ public class MethodSpec extends FeatureSpec {
   public boolean matchesClass (String clsName){
     return clsSpec.matches(clsName) != matchInverted;
   }
+
+  /**
+   * same as matchesClass(ci.getName()), but memoized per ClassInfo
+   */
+  public boolean matchesClass (ClassInfo ci){
+    int id = ci.getId();
+    if (id < 0){ // not registered yet
+      return matchesClass(ci.getName());
+    }
+
+    Match match = getMemoized(classMatches, id, ci);
+    if (match != null){
+      return match.isMatch;
+    }
+
+    boolean isMatch = matchesClass(ci.getName());
+    classMatches = memoize(classMatches, id, new Match(ci, isMatch));
+    return isMatch;
+  }
+
+  private static Match getMemoized (Match[] memo, int id, Object o){
+    if (id < memo.length){
+      Match match = memo[id];
+      if (match != null && match.get() == o){
+        return match;
+      }
+    }
+    return null;
+  }
+
+  private static Match[] memoize (Match[] memo, int id, Match match){
+    if (id >= memo.length){
+      memo = Arrays.copyOf(memo, Math.max(id + 1, memo.length * 2));
+    }
+    memo[id] = match;
+    return memo;
+  }
 }
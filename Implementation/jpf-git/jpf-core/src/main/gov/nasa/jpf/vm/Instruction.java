@@ -35,6 +35,9 @@ public abstract class Instruction implements Cloneable, InstructionInterface {
 
   // property/mode specific attributes
   protected Object attr;
+
+  // the listeners that are notified about the execution of this insn (see InstructionListeners)
+  InstructionListeners.Table listeners;
   
   // this is for changing from InstructionInterface types to Instruction types
   @Override
@@ -441,6 +444,7 @@ public abstract class Instruction implements Cloneable, InstructionInterface {
 
       // reset the method that this insn belongs to
       clone.mi = mi;
+      clone.listeners = null; // subscriptions might depend on the method
     } catch (CloneNotSupportedException e) {
       e.printStackTrace();
     }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.PropertyListenerAdapter;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
+/**
+ * the instruction notification dispatch tables of a VM listener set, i.e. which
+ * listeners are notified about the execution of which instructions.
+ *
+ * Listeners that don't override executeInstruction() or instructionExecuted() of the
+ * listener adapters are never notified, and InstructionSubscribers are only notified
+ * about the instructions they subscribe to. The per-instruction tables are computed
+ * lazily and cached with the instruction, tagged with the listener set they belong to
+ */
+class InstructionListeners {
+
+  static final VMListener[] NONE = new VMListener[0];
+
+  static class Table {
+    final InstructionListeners owner;
+    final VMListener[] executeInstruction;
+    final VMListener[] instructionExecuted;
+
+    Table (InstructionListeners owner, VMListener[] executeInstruction, VMListener[] instructionExecuted) {
+      this.owner = owner;
+      this.executeInstruction = executeInstruction;
+      this.instructionExecuted = instructionExecuted;
+    }
+  }
+
+  final VMListener[] listeners;
+
+  // listeners that implement the notification at all, and whether they filter by subscription
+  final VMListener[] executeInstruction;
+  final boolean[] executeInstructionSubscribed;
+  final VMListener[] instructionExecuted;
+  final boolean[] instructionExecutedSubscribed;
+
+  InstructionListeners (VMListener[] listeners) {
+    this.listeners = listeners;
+
+    ArrayList<VMListener> execute = new ArrayList<VMListener>();
+    ArrayList<Boolean> executeSubscribed = new ArrayList<Boolean>();
+    ArrayList<VMListener> executed = new ArrayList<VMListener>();
+    ArrayList<Boolean> executedSubscribed = new ArrayList<Boolean>();
+
+    for (VMListener listener : listeners) {
+      Class<?> cls = listener.getClass();
+
+      Class<?> notification = getDeclaringClass(cls, "executeInstruction", VM.class, ThreadInfo.class, Instruction.class);
+      if (!isAdapter(notification)) {
+        execute.add(listener);
+        executeSubscribed.add(isSubscribed(cls, notification, "isSubscribedToExecuteInstruction"));
+      }
+
+      notification = getDeclaringClass(cls, "instructionExecuted", VM.class, ThreadInfo.class, Instruction.class, Instruction.class);
+      if (!isAdapter(notification)) {
+        executed.add(listener);
+        executedSubscribed.add(isSubscribed(cls, notification, "isSubscribedToInstructionExecuted"));
+      }
+    }
+
+    executeInstruction = execute.toArray(NONE);
+    executeInstructionSubscribed = toArray(executeSubscribed);
+    instructionExecuted = executed.toArray(NONE);
+    instructionExecutedSubscribed = toArray(executedSubscribed);
+  }
+
+  Table getTable (Instruction insn) {
+    Table table = insn.listeners;
+    if (table == null || table.owner != this) {
+      table = new Table(this,
+              filter(insn, executeInstruction, executeInstructionSubscribed, true),
+              filter(insn, instructionExecuted, instructionExecutedSubscribed, false));
+      insn.listeners = table;
+    }
+    return table;
+  }
+
+  private static VMListener[] filter (Instruction insn, VMListener[] candidates, boolean[] subscribed, boolean isExecute) {
+    ArrayList<VMListener> list = null;
+
+    for (int i = 0; i < candidates.length; i++) {
+      boolean isNotified = true;
+      if (subscribed[i]) {
+        InstructionSubscriber subscriber = (InstructionSubscriber) candidates[i];
+        isNotified = isExecute ? subscriber.isSubscribedToExecuteInstruction(insn)
+                               : subscriber.isSubscribedToInstructionExecuted(insn);
+      }
+
+      if (!isNotified && list == null) {
+        list = new ArrayList<VMListener>(candidates.length);
+        for (int j = 0; j < i; j++) {
+          list.add(candidates[j]);
+        }
+      } else if (isNotified && list != null) {
+        list.add(candidates[i]);
+      }
+    }
+
+    // share the candidates array if nobody filtered this insn out
+    return (list == null) ? candidates : list.toArray(NONE);
+  }
+
+  private static boolean isAdapter (Class<?> cls) {
+    // the (empty) default implementations
+    return cls == ListenerAdapter.class || cls == PropertyListenerAdapter.class;
+  }
+
+  private static boolean isSubscribed (Class<?> cls, Class<?> notification, String subscriptionName) {
+    if (!InstructionSubscriber.class.isAssignableFrom(cls)) {
+      return false;
+    }
+    Class<?> subscription = getDeclaringClass(cls, subscriptionName, Instruction.class);
+    return notification.isAssignableFrom(subscription);
+  }
+
+  private static Class<?> getDeclaringClass (Class<?> cls, String methodName, Class<?>... argTypes) {
+    try {
+      Method m = cls.getMethod(methodName, argTypes);
+      return m.getDeclaringClass();
+    } catch (NoSuchMethodException x) {
+      throw new IllegalStateException("listener " + cls.getName() + " has no method " + methodName, x);
+    }
+  }
+
+  private static boolean[] toArray (ArrayList<Boolean> list) {
+    boolean[] a = new boolean[list.size()];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = list.get(i);
+    }
+    return a;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+/**
+ * optional interface for VMListeners that are only interested in the execution of
+ * specific instructions (e.g. returns from certain methods), so that the VM doesn't
+ * have to notify them about every executed instruction.
+ *
+ * The VM asks a subscriber only once per instruction and caches the answer with the
+ * instruction, i.e. subscriptions have to be a function of the instruction itself (its
+ * type, method, class etc.) and must not change while the listener is registered.
+ * Conditions that depend on the execution state still have to be checked in the
+ * notification.
+ *
+ * A subscription only applies to the notifications of the class that declares it (or of
+ * its superclasses). If a subclass overrides a notification without overriding the
+ * corresponding subscription, it is notified about all instructions
+ */
+public interface InstructionSubscriber {
+
+  /**
+   * @return true if executeInstruction() should be called for this instruction
+   */
+  boolean isSubscribedToExecuteInstruction (Instruction insn);
+
+  /**
+   * @return true if instructionExecuted() should be called for this instruction
+   */
+  boolean isSubscribedToInstructionExecuted (Instruction insn);
+}
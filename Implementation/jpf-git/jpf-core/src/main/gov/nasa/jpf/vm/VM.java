@@ -123,6 +123,9 @@ public abstract class VM {
    creating objects on each notification */
   protected VMListener[] listeners = new VMListener[0];
 
+  /** the dispatch tables of the instruction notifications for the current listeners */
+  protected InstructionListeners insnListeners = new InstructionListeners(listeners);
+
   /** did we get a new transition */
   protected boolean transitionOccurred;
 
@@ -787,10 +790,20 @@ public abstract class VM {
     }
   }
 
+  protected InstructionListeners.Table getInstructionListeners (Instruction insn) {
+    InstructionListeners il = insnListeners;
+    if (il.listeners != listeners) { // listeners were added or removed
+      il = new InstructionListeners(listeners);
+      insnListeners = il;
+    }
+    return il.getTable(insn);
+  }
+
   protected void notifyExecuteInstruction (ThreadInfo ti, Instruction insn) {
+    VMListener[] notified = getInstructionListeners(insn).executeInstruction;
     try {
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].executeInstruction(this, ti, insn);
+      for (int i = 0; i < notified.length; i++) {
+        notified[i].executeInstruction(this, ti, insn);
       }
     } catch (UncaughtException x) {
       throw x;
@@ -802,10 +815,11 @@ public abstract class VM {
   }
 
   protected void notifyInstructionExecuted (ThreadInfo ti, Instruction insn, Instruction nextInsn) {
+    VMListener[] notified = getInstructionListeners(insn).instructionExecuted;
     try {
       //listener.instructionExecuted(this);
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].instructionExecuted(this, ti, nextInsn, insn);
+      for (int i = 0; i < notified.length; i++) {
+        notified[i].instructionExecuted(this, ti, nextInsn, insn);
       }
     } catch (UncaughtException x) {
       throw x;
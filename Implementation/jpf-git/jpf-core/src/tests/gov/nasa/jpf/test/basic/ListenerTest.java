@@ -20,9 +20,14 @@ package gov.nasa.jpf.test.basic;
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.JPF;
 import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.bytecode.JVMReturnInstruction;
 import gov.nasa.jpf.search.Search;
 import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.InstructionSubscriber;
 import gov.nasa.jpf.vm.SingleProcessVM;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
 import gov.nasa.jpf.vm.Verify;
 
 import org.junit.Test;
@@ -60,5 +65,48 @@ public class ListenerTest extends TestJPF {
     }
   }
   
+  public static class SubscribedListener extends ListenerAdapter implements InstructionSubscriber {
+    @Override
+    public boolean isSubscribedToExecuteInstruction (Instruction insn){
+      return false;
+    }
+
+    @Override
+    public boolean isSubscribedToInstructionExecuted (Instruction insn){
+      return (insn instanceof JVMReturnInstruction) && insn.getMethodInfo().getName().equals("subscribedMethod");
+    }
+
+    @Override
+    public void executeInstruction (VM vm, ThreadInfo currentThread, Instruction instructionToExecute){
+      Verify.incrementCounter(1);
+    }
+
+    @Override
+    public void instructionExecuted (VM vm, ThreadInfo currentThread, Instruction nextInstruction, Instruction executedInstruction){
+      Verify.incrementCounter(2);
+    }
+  }
+
+  static int subscribedMethod (int x){
+    return x + 1;
+  }
+
+  @Test
+  public void testInstructionSubscription (){
+    if (!isJPFRun()){
+      Verify.resetCounter(1);
+      Verify.resetCounter(2);
+    }
+
+    if (verifyNoPropertyViolation("+listener=gov.nasa.jpf.test.basic.ListenerTest$SubscribedListener")){
+      subscribedMethod(subscribedMethod(0));
+    }
+
+    if (!isJPFRun()){
+      assertTrue("unsubscribed executeInstruction() notifications", Verify.getCounter(1) == 0);
+      assertTrue("wrong number of instructionExecuted() notifications", Verify.getCounter(2) == 2);
+    }
+  }
+
   // <2do> ... and tons more to follow
 }
@@ -19,6 +19,12 @@
 package gov.nasa.jpf.util;
 
 import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.ClassInfo;
+import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.NativeMethodInfo;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
 
 import org.junit.Test;
 
@@ -83,4 +89,87 @@ public class MethodSpecTest extends TestJPF {
     //                    ms.matches("java.lang.Object", "*"));
 
   }
+
+  //--- memoized matches
+
+  static class TestClassInfo extends ClassInfo {
+    TestClassInfo (String name, int id){
+      this.name = name;
+      this.id = id;
+    }
+  }
+
+  static class TestMethodInfo extends MethodInfo {
+    TestMethodInfo (ClassInfo ci, String name, int globalId){
+      super(ci, name, "()V", Modifier.PUBLIC);
+      this.globalId = globalId; // as if the method table had been reset
+    }
+  }
+
+  @Test
+  public void testMatchesWithReusedMethodIds(){
+    MethodSpec ms = MethodSpec.createMethodSpec("x.y.Foo.foo");
+    ClassInfo ci = new TestClassInfo("x.y.Foo", 0);
+
+    MethodInfo foo = new MethodInfo(ci, "foo", "()V", Modifier.PUBLIC);
+    MethodInfo bar = new TestMethodInfo(ci, "bar", foo.getGlobalId());
+
+    assertTrue(ms.matches(foo));
+    assertFalse(ms.matches(bar));
+    assertTrue(ms.matches(foo));
+
+    MethodInfo foo2 = new TestMethodInfo(ci, "foo", bar.getGlobalId());
+    assertTrue(ms.matches(foo2));
+    assertFalse(ms.matches(bar));
+  }
+
+  @Test
+  public void testMatchesAfterNativeMethodInfoTakeover(){
+    MethodSpec ms = MethodSpec.createMethodSpec("x.y.Foo.foo");
+    ClassInfo ci = new TestClassInfo("x.y.Foo", 0);
+
+    MethodInfo foo = new MethodInfo(ci, "foo", "()V", Modifier.PUBLIC);
+    MethodInfo bar = new MethodInfo(ci, "bar", "()V", Modifier.PUBLIC);
+    assertTrue(ms.matches(foo));
+    assertFalse(ms.matches(bar));
+
+    // native peers replace their MethodInfo under the same id
+    MethodInfo nativeFoo = new NativeMethodInfo(foo, null, null);
+    MethodInfo nativeBar = new NativeMethodInfo(bar, null, null);
+    assertEquals(foo.getGlobalId(), nativeFoo.getGlobalId());
+    assertEquals(bar.getGlobalId(), nativeBar.getGlobalId());
+
+    assertTrue(ms.matches(nativeFoo));
+    assertFalse(ms.matches(nativeBar));
+    assertTrue(ms.matches(foo));
+    assertFalse(ms.matches(bar));
+  }
+
+  @Test
+  public void testMatchesClassWithReusedIds(){
+    MethodSpec ms = MethodSpec.createMethodSpec("x.y.Foo.*");
+
+    ClassInfo foo = new TestClassInfo("x.y.Foo", 42);
+    ClassInfo bar = new TestClassInfo("x.y.Bar", 42);
+
+    assertTrue(ms.matchesClass(foo));
+    assertFalse(ms.matchesClass(bar));
+    assertTrue(ms.matchesClass(foo));
+    assertTrue(ms.matchesClass(new TestClassInfo("x.y.Foo", 42)));
+  }
+
+  @Test
+  public void testMemoizedClassesCanBeCollected(){
+    MethodSpec ms = MethodSpec.createMethodSpec("x.y.Foo.*");
+
+    ClassInfo ci = new TestClassInfo("x.y.Foo", 7);
+    assertTrue(ms.matchesClass(ci));
+
+    WeakReference<ClassInfo> ref = new WeakReference<ClassInfo>(ci);
+    ci = null;
+    for (int i = 0; i < 10 && ref.get() != null; i++){
+      System.gc();
+    }
+    assertTrue(ref.get() == null);
+  }
 }
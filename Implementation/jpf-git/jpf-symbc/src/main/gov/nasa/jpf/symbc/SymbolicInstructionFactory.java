@@ -22,6 +22,7 @@ import za.ac.sun.cs.green.Green;
 import za.ac.sun.cs.green.util.Configuration;
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.symbc.bytecode.*;
+import gov.nasa.jpf.symbc.numeric.ExpressionInterner;
 import gov.nasa.jpf.symbc.numeric.MinMax;
 import gov.nasa.jpf.symbc.numeric.solvers.ProblemChoco;
 import gov.nasa.jpf.symbc.numeric.solvers.ProblemCoral;
@@ -739,6 +740,10 @@ public class SymbolicInstructionFactory extends gov.nasa.jpf.jvm.bytecode.Instru
 		fp = conf.getBoolean("symbolic.fp", false);
 		if (fp&&debugMode) System.out.println("Using floating point theory for reals in Z3.");
 
+		/* share structurally equal expressions? (see ExpressionInterner) */
+		ExpressionInterner.configure(conf.getBoolean("symbolic.hashcons", false));
+		if (ExpressionInterner.isEnabled() && debugMode) System.out.println("Interning symbolic expressions.");
+
 		MinMax.collectMinMaxInformation(conf);
 		/* no longer required here, now read in MinMax, see line above
 
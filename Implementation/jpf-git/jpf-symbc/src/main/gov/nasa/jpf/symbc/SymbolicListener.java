@@ -25,6 +25,7 @@ import gov.nasa.jpf.PropertyListenerAdapter;
 import gov.nasa.jpf.vm.ChoiceGenerator;
 import gov.nasa.jpf.vm.ClassInfo;
 import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.InstructionSubscriber;
 import gov.nasa.jpf.vm.LocalVarInfo;
 import gov.nasa.jpf.vm.MethodInfo;
 import gov.nasa.jpf.vm.StackFrame;
@@ -77,7 +78,7 @@ import gov.nasa.jpf.listener.IdleFilter;
 import java.io.PrintWriter;
 import java.util.*;
 
-public class SymbolicListener extends PropertyListenerAdapter implements PublisherExtension {
+public class SymbolicListener extends PropertyListenerAdapter implements PublisherExtension, InstructionSubscriber {
 
     /*
      * Locals to preserve the value that was held by JPF prior to changing it in order to turn off state matching during
@@ -216,6 +217,17 @@ public class SymbolicListener extends PropertyListenerAdapter implements Publish
     }
 
 
+    @Override
+    public boolean isSubscribedToExecuteInstruction(Instruction insn) {
+        return false;
+    }
+
+    @Override
+    public boolean isSubscribedToInstructionExecuted(Instruction insn) {
+        // loops, (symbolic) method calls and their returns
+        return insn.isBackJump() || insn instanceof JVMInvokeInstruction || insn instanceof JVMReturnInstruction;
+    }
+
     @Override
     public void instructionExecuted(VM vm, ThreadInfo currentThread, Instruction nextInstruction,
                                     Instruction executedInstruction) {
@@ -402,6 +414,7 @@ public class SymbolicListener extends PropertyListenerAdapter implements Publish
                                 System.out.println(insn.getLineNumber() + ": " + "Ret_0_SYM" + returnType + " = " + result);
                                 System.out.println("***********************************");
                             }
+                            pathSummaryCreated(insn, pc, returnType, result);
                         }
                         else {
                             handleReturnType(insn, ti);
@@ -410,6 +423,7 @@ public class SymbolicListener extends PropertyListenerAdapter implements Publish
                                 System.out.println(insn.getLineNumber() + ": " + "Ret_0_SYM" + returnType + " = " + result);
                                 System.out.println("***********************************");
                             }
+                            pathSummaryCreated(insn, null, returnType, result);
                         }
                         // YN
                     }
@@ -418,6 +432,15 @@ public class SymbolicListener extends PropertyListenerAdapter implements Publish
         }
     }
 
+    /**
+     * Called for every path summary that is printed when the symbolic method returns,
+     * so that subclasses can collect the summaries without parsing the output.
+     * @param pc the path condition of the path (null if there is none)
+     * @param result the return value of the path (null if it couldn't be determined)
+     */
+    protected void pathSummaryCreated(Instruction insn, PathCondition pc, String returnType, Expression result) {
+    }
+
     public void handleReturnType(Instruction insn,ThreadInfo ti) {
         if (insn instanceof IRETURN) {
             IRETURN ireturn = (IRETURN) insn;
@@ -36,7 +36,7 @@ public class I2C extends gov.nasa.jpf.jvm.bytecode.I2C {
 	  
 	  Instruction result = super.execute(th);
 	  if (sym_val instanceof IntegerExpression) {
-	  	sym_val = new BinaryLinearIntegerExpression((IntegerExpression) sym_val, Operator.AND, new IntegerConstant(65535));
+	  	sym_val = ExpressionInterner.intern(new BinaryLinearIntegerExpression((IntegerExpression) sym_val, Operator.AND, new IntegerConstant(65535)));
 	  }
 	  if (sym_val != null)
 		  sf.setOperandAttr(sym_val);
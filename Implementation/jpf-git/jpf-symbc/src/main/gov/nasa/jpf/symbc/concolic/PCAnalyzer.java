@@ -183,8 +183,11 @@ public class PCAnalyzer {
 
 					result = mixedIsSatisfiable(working_pc, solver);
 
-					if(working_pc_last!=null)
+					if(working_pc_last!=null) {
 						working_pc_last.and = null; // remove the conjuncts added from the partitions
+						working_pc.recomputeCount();
+						working_pc.resetHashCode(); // the cached constraint set still holds the removed conjuncts
+					}
 
 					if(result)
 						//solver.solve(getSimplifiedPC());
@@ -41,15 +41,19 @@ import java.util.Map;
 
 public class BinaryLinearIntegerExpression extends LinearIntegerExpression
 {
-	IntegerExpression left;
-	Operator   op;
-	IntegerExpression right;
+	final IntegerExpression left;
+	final Operator   op;
+	final IntegerExpression right;
+
+	// The operands never change, so the (deep) hash code is only computed once.
+	private final int hashCode;
 
 	public BinaryLinearIntegerExpression (IntegerExpression l, Operator o, IntegerExpression r)
 	{
 		left = l;
 		op = o;
 		right = r;
+		hashCode = 23232 ^ (left.hashCode() << 2) ^ (op.hashCode() << 4) ^ (right.hashCode() << 7);
 	}
 
 	@Override
@@ -103,7 +107,7 @@ public class BinaryLinearIntegerExpression extends LinearIntegerExpression
 
 	@Override
 	public int hashCode() {
-		return 23232 ^ (left.hashCode() << 2) ^ (op.hashCode() << 4) ^ (right.hashCode() << 7);
+		return hashCode;
 	}
 	
 	public String toString ()
@@ -135,6 +139,10 @@ public class BinaryLinearIntegerExpression extends LinearIntegerExpression
 
 	@Override
 	public boolean equals(Object o) {
+	    // Interned expressions (see ExpressionInterner) are equal iff they are identical.
+	    if (this == o) {
+	        return true;
+	    }
 	    return ((o instanceof BinaryLinearIntegerExpression) &&
 	            ((BinaryLinearIntegerExpression) o).left.equals(this.left) &&
 	            ((BinaryLinearIntegerExpression) o).op.equals(this.op) &&
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * Symbolic Pathfinder (jpf-symbc) is licensed under the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package gov.nasa.jpf.symbc.numeric;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional hash-consing of symbolic expressions (enabled with
+ * symbolic.hashcons=true). If enabled, structurally equal binary and math
+ * expressions are represented by the same object: Since the operands of a
+ * new expression are already interned, an expression can be looked up by
+ * its operator and the identity of its operands (or the value, for
+ * constants), which doesn't need a deep traversal. This saves memory for
+ * expressions that are created over and over again (e.g., in loops), and
+ * it allows consumers to cache results per expression object.
+ *
+ * The table only holds weak references to the expressions, so expressions
+ * that are no longer used by any path condition or attribute are still
+ * garbage collected. Constraints are not interned: they are linked into
+ * path conditions through their (mutable) 'and' field, so they can't be
+ * shared between path conditions.
+ *
+ * Like the rest of SPF's static state, this isn't thread-safe.
+ */
+public final class ExpressionInterner {
+	private static boolean enabled = false;
+
+	private static final Map<Key, Entry> table = new HashMap<Key, Entry>();
+	private static final ReferenceQueue<Expression> queue = new ReferenceQueue<Expression>();
+
+	private ExpressionInterner() {
+	}
+
+	/**
+	 * Enables or disables the interning and empties the table, e.g., at
+	 * the start of each JPF run (see SymbolicInstructionFactory).
+	 */
+	public static void configure(boolean isEnabled) {
+		enabled = isEnabled;
+		table.clear();
+		while (queue.poll() != null) {
+			// Discard the references of the old table.
+		}
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return An expression that is structurally equal to the given one and
+	 *         was interned before, or the given expression (if there is none
+	 *         or interning is disabled).
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Expression> T intern(T expr) {
+		if (!enabled) {
+			return expr;
+		}
+		Key key = keyOf(expr);
+		if (key == null) {
+			return expr;
+		}
+
+		purge();
+
+		Entry entry = table.get(key);
+		Expression interned = entry == null ? null : entry.get();
+		if (interned != null) {
+			return (T) interned;
+		}
+		table.put(key, new Entry(expr, key, queue));
+		return expr;
+	}
+
+	/** @return The number of interned expressions (including ones that were already collected). */
+	public static int size() {
+		return table.size();
+	}
+
+	private static Key keyOf(Expression expr) {
+		if (expr instanceof BinaryLinearIntegerExpression) {
+			BinaryLinearIntegerExpression e = (BinaryLinearIntegerExpression) expr;
+			return new Key(e.getClass(), e.op, e.left, e.right);
+		} else if (expr instanceof BinaryNonLinearIntegerExpression) {
+			BinaryNonLinearIntegerExpression e = (BinaryNonLinearIntegerExpression) expr;
+			return new Key(e.getClass(), e.op, e.left, e.right);
+		} else if (expr instanceof BinaryRealExpression) {
+			BinaryRealExpression e = (BinaryRealExpression) expr;
+			return new Key(e.getClass(), e.op, e.left, e.right);
+		} else if (expr instanceof MathRealExpression) {
+			MathRealExpression e = (MathRealExpression) expr;
+			return new Key(e.getClass(), e.op, e.arg1, e.arg2);
+		}
+		return null;
+	}
+
+	private static void purge() {
+		Entry entry;
+		while ((entry = (Entry) queue.poll()) != null) {
+			if (table.get(entry.key) == entry) {
+				table.remove(entry.key);
+			}
+		}
+	}
+
+	private static final class Entry extends WeakReference<Expression> {
+		private final Key key;
+
+		private Entry(Expression expr, Key key, ReferenceQueue<Expression> queue) {
+			super(expr, queue);
+			this.key = key;
+		}
+	}
+
+	private static final class Key {
+		private final Class<?> type;
+		private final Object op;
+		private final Expression left;
+		private final Expression right;
+		private final int hash;
+
+		private Key(Class<?> type, Object op, Expression left, Expression right) {
+			this.type = type;
+			this.op = op;
+			this.left = left;
+			this.right = right;
+			this.hash = ((type.hashCode() * 31 + (op == null ? 0 : op.hashCode())) * 31 + hash(left)) * 31 + hash(right);
+		}
+
+		// Constants are compared by value, all other
+		// operands (including variables) by identity.
+		private static boolean isConstant(Expression e) {
+			return e instanceof IntegerConstant || e instanceof RealConstant;
+		}
+
+		private static int hash(Expression e) {
+			if (e == null) {
+				return 0;
+			}
+			return isConstant(e) ? e.hashCode() : System.identityHashCode(e);
+		}
+
+		private static boolean same(Expression a, Expression b) {
+			if (a == b) {
+				return true;
+			}
+			return isConstant(a) && b != null && a.getClass() == b.getClass() && a.equals(b);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return type == other.type
+				&& op == other.op
+				&& same(left, other.left)
+				&& same(right, other.right);
+		}
+	}
+}
@@ -45,24 +45,24 @@ public abstract class IntegerExpression extends Expression {
     //returns -1 if (this < i), 0 if equal and 1 otherwise
     public IntegerExpression _cmp (long i)
     {
-        return new BinaryNonLinearIntegerExpression(this, CMP, new IntegerConstant(i));
+        return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, CMP, new IntegerConstant(i)));
     }
 
     public IntegerExpression _cmp_reverse (long i)
     {
-        return new BinaryNonLinearIntegerExpression(new IntegerConstant(i), CMP, this);
+        return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(new IntegerConstant(i), CMP, this));
     }
 
     public IntegerExpression _cmp (IntegerExpression e)
     {
-        return new BinaryNonLinearIntegerExpression(this, CMP, e);
+        return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, CMP, e));
     }
 
 //------------------------------------------------------
 
 	public IntegerExpression _minus_reverse (long i)
 	{
-		return new BinaryNonLinearIntegerExpression(new IntegerConstant(i), MINUS, this);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(new IntegerConstant(i), MINUS, this));
 	}
 
 	public IntegerExpression _minus (long i)
@@ -70,7 +70,7 @@ public abstract class IntegerExpression extends Expression {
 		//simplify
 		if (i == 0)
 			return this;
-		return new BinaryNonLinearIntegerExpression(this, MINUS, new IntegerConstant(i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, MINUS, new IntegerConstant(i)));
 	}
 
 	public IntegerExpression _minus (IntegerExpression e)
@@ -84,7 +84,7 @@ public abstract class IntegerExpression extends Expression {
 		if (e == this)
 			return new IntegerConstant(0);
 
-		return new BinaryNonLinearIntegerExpression(this, MINUS, e);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, MINUS, e));
 	}
 
 	public IntegerExpression _mul (long i)
@@ -95,7 +95,7 @@ public abstract class IntegerExpression extends Expression {
 		if (i == 0)
 			return new IntegerConstant(0);
 
-		return new BinaryNonLinearIntegerExpression(this, MUL, new IntegerConstant(i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, MUL, new IntegerConstant(i)));
 	}
 
 	public IntegerExpression _mul (IntegerExpression e)
@@ -109,7 +109,7 @@ public abstract class IntegerExpression extends Expression {
 				return new IntegerConstant(0);
 		}
 
-		return new BinaryNonLinearIntegerExpression(this, MUL, e);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, MUL, e));
 	}
 
 	public IntegerExpression _plus (long i)
@@ -117,7 +117,7 @@ public abstract class IntegerExpression extends Expression {
 		//simplify
 		if (i == 0)
 			return this;
-		return new BinaryNonLinearIntegerExpression(this, PLUS, new IntegerConstant(i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, PLUS, new IntegerConstant(i)));
 	}
 
 	public IntegerExpression _plus (IntegerExpression e)
@@ -129,7 +129,7 @@ public abstract class IntegerExpression extends Expression {
 				return this;
 		}
 
-		return new BinaryNonLinearIntegerExpression(this, PLUS, e);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, PLUS, e));
 	}
 
 	public IntegerExpression _shiftR(IntegerExpression i) {
@@ -140,7 +140,7 @@ public abstract class IntegerExpression extends Expression {
 				return this;
 		}
 
-		return new BinaryNonLinearIntegerExpression(this, SHIFTR, i);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, SHIFTR, i));
 	}
 
 	public IntegerExpression _shiftL(IntegerExpression i) {
@@ -150,7 +150,7 @@ public abstract class IntegerExpression extends Expression {
 				return this;
 		}
 
-		return new BinaryNonLinearIntegerExpression(this, SHIFTL, i);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, SHIFTL, i));
 	}
 
 	public IntegerExpression _shiftUR(IntegerExpression i) {
@@ -160,7 +160,7 @@ public abstract class IntegerExpression extends Expression {
 				return this;
 		}
 
-		return new BinaryNonLinearIntegerExpression(this, SHIFTUR, i);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, SHIFTUR, i));
 	}
 
 	public IntegerExpression _and(IntegerExpression e)
@@ -172,7 +172,7 @@ public abstract class IntegerExpression extends Expression {
 				return new IntegerConstant(0);
 		}
 
-		return new BinaryNonLinearIntegerExpression(this, AND, e);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, AND, e));
 	}
 
 	public IntegerExpression _or(IntegerExpression e) {
@@ -182,74 +182,74 @@ public abstract class IntegerExpression extends Expression {
 				return this;
 			}
 		}
-		return new BinaryNonLinearIntegerExpression(this, OR, e);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, OR, e));
 	}
 
 	public IntegerExpression _xor(IntegerExpression e) {
-		return new BinaryNonLinearIntegerExpression(this, XOR, e);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, XOR, e));
 	}
 
 	public IntegerExpression _shiftR(long i)
 	{
 		if(i == 0)
 			return this;
-		return new BinaryNonLinearIntegerExpression(this, SHIFTR,
-											new IntegerConstant( i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, SHIFTR,
+											new IntegerConstant( i)));
 
 	}
 
 	public IntegerExpression _shiftL(long i) {
 		if(i == 0)
 			return this;
-		return new BinaryNonLinearIntegerExpression(this, SHIFTL,
-											new IntegerConstant( i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, SHIFTL,
+											new IntegerConstant( i)));
 	}
 
 	public IntegerExpression _shiftUR(long i) {
 		if(i == 0)
 			return this;
-		return new BinaryNonLinearIntegerExpression(this, SHIFTUR,
-											new IntegerConstant( i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, SHIFTUR,
+											new IntegerConstant( i)));
 	}
 
 	public IntegerExpression _and(long i)
 	{
 		if(i == 0)
 			return new IntegerConstant(0);
-		return new BinaryNonLinearIntegerExpression(this, AND, new IntegerConstant(i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, AND, new IntegerConstant(i)));
 	}
 
 	public IntegerExpression _or(long i)
 	{
 		if(i == 0)
 			return this;
-		return new BinaryNonLinearIntegerExpression(this, OR, new IntegerConstant( i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, OR, new IntegerConstant( i)));
 	}
 
 	public IntegerExpression _xor(long i)
 	{
-		return new BinaryNonLinearIntegerExpression(this, XOR, new IntegerConstant( i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, XOR, new IntegerConstant( i)));
 	}
 
 	public IntegerExpression _rem(long i)
 	{
-		return new BinaryNonLinearIntegerExpression(this, REM, new IntegerConstant( i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, REM, new IntegerConstant( i)));
 	}
 	
 	public IntegerExpression _rem_reverse(long i)
 	{
 		//throw new RuntimeException( "## Error: Operation not supported!" );
-		return new BinaryNonLinearIntegerExpression(new IntegerConstant( i), REM, this);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(new IntegerConstant( i), REM, this));
 	}
 	
 	public IntegerExpression _rem(IntegerExpression i)
 	{
-		return new BinaryNonLinearIntegerExpression(this, REM, i);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, REM, i));
 	}
 
 	public IntegerExpression _neg()
 	{
-		return new BinaryNonLinearIntegerExpression(new IntegerConstant(0), MINUS, this);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(new IntegerConstant(0), MINUS, this));
 	}
 
 	public IntegerExpression _div (long i)
@@ -258,7 +258,7 @@ public abstract class IntegerExpression extends Expression {
 		assert (i != 0);
 		if (i == 1)
 			return this;
-		return new BinaryNonLinearIntegerExpression(this, DIV, new IntegerConstant(i));
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, DIV, new IntegerConstant(i)));
 	}
 
 	public IntegerExpression _div (IntegerExpression e)
@@ -273,14 +273,14 @@ public abstract class IntegerExpression extends Expression {
 		if (e == this)
 			return new IntegerConstant(1);
 
-		return new BinaryNonLinearIntegerExpression(this, DIV, e);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(this, DIV, e));
 	}
 
 	public IntegerExpression _div_reverse (long i)
 	{
 		if (i == 0)
 			return new IntegerConstant(0);
-		return new BinaryNonLinearIntegerExpression(new IntegerConstant(i), DIV, this);
+		return ExpressionInterner.intern(new BinaryNonLinearIntegerExpression(new IntegerConstant(i), DIV, this));
 	}
 
 	//TODO test this
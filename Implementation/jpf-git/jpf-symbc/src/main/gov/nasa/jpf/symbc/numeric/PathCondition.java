@@ -39,6 +39,7 @@ package gov.nasa.jpf.symbc.numeric;
 
 import za.ac.sun.cs.green.Instance;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -81,6 +82,14 @@ public class PathCondition implements Comparable<PathCondition> {
 
     private Integer hashCode = null;
 
+    // The constraints of the list rooted in header, for duplicate checks in
+    // constant (instead of linear) time. The set is persistent, so copies of
+    // this path condition share it with each other. It is only valid for the
+    // header it was built for (header is public and modified elsewhere, too),
+    // and null if it has to be rebuilt (e.g., after resetHashCode).
+    private ConstraintSet constraintSet = ConstraintSet.EMPTY;
+    private Constraint constraintSetHeader = null;
+
     // added by guowei
     public static boolean isReplay = false;
 
@@ -108,6 +117,8 @@ public class PathCondition implements Comparable<PathCondition> {
     public PathCondition make_copy() {
         PathCondition pc_new = new PathCondition();
         pc_new.header = this.header;
+        pc_new.constraintSet = this.constraintSet;
+        pc_new.constraintSetHeader = this.constraintSetHeader;
         pc_new.count = this.count;
         pc_new.spc = this.spc.make_copy(pc_new); // TODO: to review
         pc_new.solverCalls = this.solverCalls;
@@ -171,8 +182,11 @@ public class PathCondition implements Comparable<PathCondition> {
         if (!this.hasConstraint(loic)) {
             flagSolved = false;
             Constraint t = (Constraint) loic;
+            ConstraintSet set = getConstraintSet().plus(t);
             t.and = header;
             header = t;
+            constraintSet = set;
+            constraintSetHeader = t;
             count++;
         }
     }
@@ -269,8 +283,11 @@ public class PathCondition implements Comparable<PathCondition> {
         // if Green is used and slicing is on then we always add the constraint
         // since we assume the last constraint added is always the header
         if ((SymbolicInstructionFactory.greenSolver != null) || !hasConstraint(t)) {
+            ConstraintSet set = getConstraintSet().plus(t);
             t.and = header;
             header = t;
+            constraintSet = set;
+            constraintSetHeader = t;
             count++;
             t.setLineNumber(lineNumber);
             return true;
@@ -289,6 +306,7 @@ public class PathCondition implements Comparable<PathCondition> {
         Constraint tmp = header.last();
         tmp.and = t;
         count = length(header);
+        constraintSet = null;
     }
 
     private static int length(Constraint c) {
@@ -311,17 +329,19 @@ public class PathCondition implements Comparable<PathCondition> {
      * Returns whether this path condition contains the constraint.
      */
     public boolean hasConstraint(Constraint c) {
-        Constraint t = header;
+        return getConstraintSet().contains(c);
+    }
 
-        while (t != null) {
-            if (c.equals(t)) {
-                return true;
+    private ConstraintSet getConstraintSet() {
+        if (constraintSet == null || constraintSetHeader != header) {
+            ConstraintSet set = ConstraintSet.EMPTY;
+            for (Constraint t = header; t != null; t = t.and) {
+                set = set.plus(t);
             }
-
-            t = t.and;
+            constraintSet = set;
+            constraintSetHeader = header;
         }
-
-        return false;
+        return constraintSet;
     }
 
     public Constraint last() {
@@ -569,6 +589,7 @@ public class PathCondition implements Comparable<PathCondition> {
      */
     public void resetHashCode() {
         hashCode = null;
+        constraintSet = null;
     }
 
     /**
@@ -604,4 +625,80 @@ public class PathCondition implements Comparable<PathCondition> {
         return result;
     }
 
+
+    /**
+     * An immutable set of constraints (a hash array mapped trie), where
+     * adding a constraint copies only the path to it, and otherwise shares
+     * the trie with the original set. Membership is checked with
+     * {@link Constraint#equals(Object)}, the same way as in a list scan.
+     */
+    private static final class ConstraintSet {
+        static final ConstraintSet EMPTY = new ConstraintSet(0, new Object[0]);
+
+        // Below the last level (shift >= 32), the entries
+        // are all constraints with the same hash code.
+        private final int bitmap;
+        private final Object[] entries;
+
+        private ConstraintSet(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        boolean contains(Constraint c) {
+            return contains(c, c.hashCode(), 0);
+        }
+
+        ConstraintSet plus(Constraint c) {
+            return plus(c, c.hashCode(), 0);
+        }
+
+        private boolean contains(Constraint c, int hash, int shift) {
+            if (shift >= 32) {
+                for (Object e : entries) {
+                    if (c.equals(e)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return false;
+            }
+            Object e = entries[Integer.bitCount(bitmap & (bit - 1))];
+            if (e instanceof ConstraintSet) {
+                return ((ConstraintSet) e).contains(c, hash, shift + 5);
+            }
+            return c.equals(e);
+        }
+
+        private ConstraintSet plus(Constraint c, int hash, int shift) {
+            if (shift >= 32) {
+                Object[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+                newEntries[entries.length] = c;
+                return new ConstraintSet(0, newEntries);
+            }
+            int bit = 1 << ((hash >>> shift) & 31);
+            int i = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] newEntries = new Object[entries.length + 1];
+                System.arraycopy(entries, 0, newEntries, 0, i);
+                newEntries[i] = c;
+                System.arraycopy(entries, i, newEntries, i + 1, entries.length - i);
+                return new ConstraintSet(bitmap | bit, newEntries);
+            }
+            Object e = entries[i];
+            ConstraintSet child;
+            if (e instanceof ConstraintSet) {
+                child = ((ConstraintSet) e).plus(c, hash, shift + 5);
+            } else {
+                Constraint other = (Constraint) e;
+                child = EMPTY.plus(other, other.hashCode(), shift + 5).plus(c, hash, shift + 5);
+            }
+            Object[] newEntries = entries.clone();
+            newEntries[i] = child;
+            return new ConstraintSet(bitmap, newEntries);
+        }
+    }
 }
@@ -162,6 +162,10 @@ public class RealConstant extends RealExpression {
     return value == ((RealConstant) o).value;
   }
 
+  public int hashCode() { // consistent with equals, i.e., 0.0 and -0.0 are equal
+    return value == 0 ? 0 : Double.hashCode(value);
+  }
+
   public String toString () {
     return "CONST_" + value + "";
   }
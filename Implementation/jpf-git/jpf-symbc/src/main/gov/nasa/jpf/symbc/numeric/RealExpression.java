@@ -44,59 +44,59 @@ public abstract class RealExpression extends Expression {
 
 	public RealExpression _minus_reverse (double i) 
 	{
-		return new BinaryRealExpression(new RealConstant(i), MINUS, this);
+		return ExpressionInterner.intern(new BinaryRealExpression(new RealConstant(i), MINUS, this));
 	}
 	
 	public RealExpression _minus (double i) 
 	{
-		return new BinaryRealExpression(this, MINUS, new RealConstant(i));
+		return ExpressionInterner.intern(new BinaryRealExpression(this, MINUS, new RealConstant(i)));
 	}
 
 	public RealExpression _minus (RealExpression e) 
 	{
-		return new BinaryRealExpression(this, MINUS, e);
+		return ExpressionInterner.intern(new BinaryRealExpression(this, MINUS, e));
 	}
 
 	public RealExpression _mul (double i) 
 	{
-		return new BinaryRealExpression(this, MUL, new RealConstant(i));
+		return ExpressionInterner.intern(new BinaryRealExpression(this, MUL, new RealConstant(i)));
 	}
 
 	public RealExpression _mul (RealExpression e) 
 	{
-		return new BinaryRealExpression(this, MUL, e);
+		return ExpressionInterner.intern(new BinaryRealExpression(this, MUL, e));
 	}
 
 	public RealExpression _plus (double i) 
 	{
-		return new BinaryRealExpression(this, PLUS, new RealConstant(i));
+		return ExpressionInterner.intern(new BinaryRealExpression(this, PLUS, new RealConstant(i)));
 	}
 
 	public RealExpression _plus (RealExpression e) 
 	{
-		return new BinaryRealExpression(this, PLUS, e);
+		return ExpressionInterner.intern(new BinaryRealExpression(this, PLUS, e));
 	}
 	
 	public RealExpression _div_reverse(double i) 
 	{
 		//assert (i!=0);
-		return new BinaryRealExpression(new RealConstant(i), DIV, this );
+		return ExpressionInterner.intern(new BinaryRealExpression(new RealConstant(i), DIV, this ));
 	}
 
 	public RealExpression _div (double i) 
 	{
 		assert (i!=0);
-		return new BinaryRealExpression(this, DIV, new RealConstant(i));
+		return ExpressionInterner.intern(new BinaryRealExpression(this, DIV, new RealConstant(i)));
 	}
 	
 	public RealExpression _div (RealExpression e) 
 	{
-		return new BinaryRealExpression(this, DIV, e);
+		return ExpressionInterner.intern(new BinaryRealExpression(this, DIV, e));
 	}
 	
 	public RealExpression _neg () 
 	{
-		return new BinaryRealExpression(new RealConstant(0), MINUS, this);
+		return ExpressionInterner.intern(new BinaryRealExpression(new RealConstant(0), MINUS, this));
 	}
 	
 
@@ -131,7 +131,7 @@ public class JPF_java_lang_Math extends NativePeer{
 		  return Math.sqrt(a);
 	  }
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.SQRT,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.SQRT,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -158,7 +158,7 @@ public class JPF_java_lang_Math extends NativePeer{
 		  return Math.exp(a);
 	  }
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.EXP,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.EXP,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -174,7 +174,7 @@ public class JPF_java_lang_Math extends NativePeer{
 		  return Math.asin(a);
 	  }
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.ASIN,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.ASIN,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -190,7 +190,7 @@ public class JPF_java_lang_Math extends NativePeer{
 		  return Math.acos(a);
 	  }
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.ACOS,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.ACOS,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -207,7 +207,7 @@ public class JPF_java_lang_Math extends NativePeer{
 		  return Math.atan(a);
 	  }
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.ATAN,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.ATAN,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -225,11 +225,11 @@ public class JPF_java_lang_Math extends NativePeer{
 	  if (sym_arg1 == null && sym_arg2 == null) // concrete
 		  return Math.atan2(a,b);
 	  else if (sym_arg1 == null)
-		  result = new MathRealExpression(MathFunction.ATAN2, a, sym_arg2);
+		  result = ExpressionInterner.intern(new MathRealExpression(MathFunction.ATAN2, a, sym_arg2));
 	  else if (sym_arg2 == null)
-		  result = new MathRealExpression(MathFunction.ATAN2, sym_arg1, b);
+		  result = ExpressionInterner.intern(new MathRealExpression(MathFunction.ATAN2, sym_arg1, b));
 	  else // both symbolic
-		  result = new MathRealExpression(MathFunction.ATAN2, sym_arg1, sym_arg2);
+		  result = ExpressionInterner.intern(new MathRealExpression(MathFunction.ATAN2, sym_arg1, sym_arg2));
 
 	  env.setReturnAttribute(result);
 	  // System.out.println("result "+result);
@@ -259,7 +259,7 @@ public class JPF_java_lang_Math extends NativePeer{
 		  return Math.log(a);
 	  }
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.LOG,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.LOG,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -297,7 +297,7 @@ public class JPF_java_lang_Math extends NativePeer{
 		  return Math.tan(a);
 	  }
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.TAN,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.TAN,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -313,7 +313,7 @@ public class JPF_java_lang_Math extends NativePeer{
 		  return Math.sin(a);
 	  }
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.SIN,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.SIN,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -329,7 +329,7 @@ public class JPF_java_lang_Math extends NativePeer{
 	  if (sym_arg == null) // concrete
 		  return Math.cos(a);
 	  else {
-		  RealExpression result = new MathRealExpression(MathFunction.COS,sym_arg);
+		  RealExpression result = ExpressionInterner.intern(new MathRealExpression(MathFunction.COS,sym_arg));
 		  env.setReturnAttribute(result);
 		  // System.out.println("result "+result);
 		  return 0;
@@ -348,11 +348,11 @@ public class JPF_java_lang_Math extends NativePeer{
 	  if (sym_arg1 == null && sym_arg2 == null) // concrete
 		  return Math.pow(a,b);
 	  else if (sym_arg1 == null)
-		  result = new MathRealExpression(MathFunction.POW, a, sym_arg2);
+		  result = ExpressionInterner.intern(new MathRealExpression(MathFunction.POW, a, sym_arg2));
 	  else if (sym_arg2 == null)
-		  result = new MathRealExpression(MathFunction.POW, sym_arg1, b);
+		  result = ExpressionInterner.intern(new MathRealExpression(MathFunction.POW, sym_arg1, b));
 	  else // both symbolic
-		  result = new MathRealExpression(MathFunction.POW, sym_arg1, sym_arg2);
+		  result = ExpressionInterner.intern(new MathRealExpression(MathFunction.POW, sym_arg1, sym_arg2));
 
 	  env.setReturnAttribute(result);
 	  // System.out.println("result "+result);
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * Symbolic Pathfinder (jpf-symbc) is licensed under the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package gov.nasa.jpf.symbc;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.symbc.numeric.PathCondition;
+import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Runs the same symbolic method with and without symbolic.hashcons,
+ * which must not change the explored paths and their path conditions.
+ */
+public class TestHashConsing extends InvokeTest {
+
+  private static final String SYM_METHOD = "+symbolic.method=gov.nasa.jpf.symbc.TestHashConsing.example(sym#sym)";
+  private static final String LISTENER = "+listener=gov.nasa.jpf.symbc.TestHashConsing$PathConditionRecorder";
+
+  public static void main(String[] args) {
+    runTestsOfThisClass(args);
+  }
+
+  // choco needs small domains to solve the constraints quickly
+  private static final String MIN_INT = "+symbolic.min_int=-100";
+  private static final String MAX_INT = "+symbolic.max_int=100";
+
+  private static String[] jpfArgs(boolean isHashConsing) {
+    return new String[]{INSN_FACTORY, SYM_METHOD, LISTENER, MIN_INT, MAX_INT, "+symbolic.hashcons=" + isHashConsing};
+  }
+
+  @Test
+  public void hashConsingKeepsPathConditions() {
+    PathConditionRecorder.pathConditions.clear();
+    if (verifyNoPropertyViolation(jpfArgs(false))) {
+      example(0, 0);
+      return;
+    }
+    List<String> expected = new ArrayList<String>(PathConditionRecorder.pathConditions);
+
+    PathConditionRecorder.pathConditions.clear();
+    if (verifyNoPropertyViolation(jpfArgs(true))) {
+      example(0, 0);
+      return;
+    }
+    List<String> actual = new ArrayList<String>(PathConditionRecorder.pathConditions);
+
+    assertTrue("no paths explored", expected.size() > 1);
+    assertEquals(expected, actual);
+  }
+
+  // Builds the same subterms (x + y, s + y, ...) on several paths and
+  // repeats a branch condition, so that interned expressions are shared.
+  static int example(int x, int y) {
+    int s = x + y;
+    for (int i = 0; i < 2; i++) {
+      if (s + y > x - 1) {
+        s = s - y;
+      } else {
+        s = s + y;
+      }
+      if (x + y > 3) {
+        s = s + 1;
+      }
+    }
+    return s;
+  }
+
+  /** Records the path condition whenever the symbolic method returns. */
+  public static class PathConditionRecorder extends ListenerAdapter {
+    static final List<String> pathConditions = new ArrayList<String>();
+
+    @Override
+    public void methodExited(VM vm, ThreadInfo currentThread, MethodInfo exitedMethod) {
+      if (exitedMethod.getName().equals("example")) {
+        PathCondition pc = PathCondition.getPC(vm);
+        // the ids of symbolic variables keep counting across JPF runs
+        pathConditions.add(pc == null ? "" : pc.stringPC().replaceAll("_\\d+_SYMINT", "_SYMINT"));
+      }
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * Symbolic Pathfinder (jpf-symbc) is licensed under the Apache License, 
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+package gov.nasa.jpf.symbc.numeric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the duplicate checks of PathCondition, which use a persistent
+ * set of the constraints in the list rooted in header.
+ */
+public class PathConditionTest {
+
+  private final SymbolicInteger x = new SymbolicInteger("x");
+  private final SymbolicInteger y = new SymbolicInteger("y");
+
+  private LinearIntegerConstraint gt(IntegerExpression l, IntegerExpression r) {
+    return new LinearIntegerConstraint(l, Comparator.GT, r);
+  }
+
+  private LinearIntegerConstraint gt(IntegerExpression l, long r) {
+    return gt(l, new IntegerConstant(r));
+  }
+
+  @Test
+  public void prependedConstraintsAreMembers() {
+    PathCondition pc = new PathCondition();
+    // enough constraints for several levels of the trie
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(pc.prependUnlessRepeated(gt(x, i)));
+    }
+    assertEquals(1000, pc.count());
+
+    for (int i = 0; i < 1000; i++) {
+      // equal, but not the same constraint
+      assertTrue(pc.hasConstraint(gt(x, i)));
+    }
+    assertFalse(pc.hasConstraint(gt(x, 1000)));
+    assertFalse(pc.hasConstraint(gt(y, 0)));
+
+    assertFalse(pc.prependUnlessRepeated(gt(x, 42)));
+    assertEquals(1000, pc.count());
+  }
+
+  @Test
+  public void unequalConstraintsWithTheSameHashCodeAreDistinguished() {
+    LinearIntegerConstraint xy = gt(x, y);
+    LinearIntegerConstraint yx = gt(y, x);
+    assertEquals(xy.hashCode(), yx.hashCode());
+
+    PathCondition pc = new PathCondition();
+    pc.prependUnlessRepeated(xy);
+    assertTrue(pc.hasConstraint(xy));
+    assertFalse(pc.hasConstraint(yx));
+
+    assertTrue(pc.prependUnlessRepeated(yx));
+    assertTrue(pc.hasConstraint(xy));
+    assertTrue(pc.hasConstraint(yx));
+    assertFalse(pc.prependUnlessRepeated(gt(y, x)));
+  }
+
+  @Test
+  public void copiesDoNotSeeEachOthersConstraints() {
+    PathCondition pc = new PathCondition();
+    pc._addDet(Comparator.GT, x, 0);
+
+    PathCondition copy = pc.make_copy();
+    assertTrue(copy.hasConstraint(gt(x, 0)));
+
+    copy._addDet(Comparator.GT, x, 1);
+    pc._addDet(Comparator.GT, x, 2);
+
+    assertTrue(copy.hasConstraint(gt(x, 1)));
+    assertFalse(copy.hasConstraint(gt(x, 2)));
+    assertTrue(pc.hasConstraint(gt(x, 2)));
+    assertFalse(pc.hasConstraint(gt(x, 1)));
+  }
+
+  @Test
+  public void logicalOrConstraintsAreNotRepeated() {
+    PathCondition pc = new PathCondition();
+    pc._addDet(or(gt(x, 0), gt(y, 0)));
+    pc._addDet(or(gt(x, 0), gt(y, 0)));
+    assertEquals(1, pc.count());
+
+    pc._addDet(or(gt(x, 0), gt(y, 1)));
+    assertEquals(2, pc.count());
+    assertTrue(pc.hasConstraint(or(gt(x, 0), gt(y, 0))));
+    assertTrue(pc.hasConstraint(or(gt(x, 0), gt(y, 1))));
+  }
+
+  private LogicalORLinearIntegerConstraints or(LinearIntegerConstraint... constraints) {
+    LogicalORLinearIntegerConstraints loic = new LogicalORLinearIntegerConstraints();
+    for (LinearIntegerConstraint c : constraints) {
+      loic.addToList(c);
+    }
+    return loic;
+  }
+
+  @Test
+  public void appendedConjunctsAreMembers() {
+    PathCondition pc = new PathCondition();
+    pc._addDet(Comparator.GT, x, 0);
+    assertFalse(pc.hasConstraint(gt(x, 1)));
+
+    LinearIntegerConstraint conjuncts = gt(x, 1);
+    conjuncts.and = gt(x, 2);
+    pc.appendAllConjuncts(conjuncts);
+
+    assertEquals(3, pc.count());
+    assertTrue(pc.hasConstraint(gt(x, 0)));
+    assertTrue(pc.hasConstraint(gt(x, 1)));
+    assertTrue(pc.hasConstraint(gt(x, 2)));
+  }
+
+  @Test
+  public void changedHeaderIsNoticed() {
+    PathCondition pc = new PathCondition();
+    pc._addDet(Comparator.GT, x, 0);
+    pc._addDet(Comparator.GT, x, 1);
+
+    pc.header = pc.header.and;
+    assertFalse(pc.hasConstraint(gt(x, 1)));
+    assertTrue(pc.hasConstraint(gt(x, 0)));
+
+    pc.removeHeader();
+    assertFalse(pc.hasConstraint(gt(x, 0)));
+  }
+
+  @Test
+  public void constraintsChangedInPlaceAreFoundAfterResetHashCode() {
+    PathCondition pc = new PathCondition();
+    LinearIntegerConstraint c = gt(x, 0);
+    pc.prependUnlessRepeated(c);
+
+    c.setComparator(Comparator.LT);
+    pc.resetHashCode();
+
+    assertTrue(pc.hasConstraint(new LinearIntegerConstraint(x, Comparator.LT, new IntegerConstant(0))));
+    assertFalse(pc.hasConstraint(gt(x, 0)));
+  }
+
+  @Test
+  public void truncatedConstraintsAreNotFoundAfterResetHashCode() {
+    // what PCAnalyzer does to try the partitions of a concolic path condition
+    PathCondition pc = new PathCondition();
+    pc._addDet(Comparator.GT, x, 0);
+    PathCondition partition = new PathCondition();
+    partition._addDet(Comparator.GT, y, 0);
+
+    Constraint last = pc.last();
+    pc.appendAllConjuncts(partition.header);
+    assertTrue(pc.hasConstraint(gt(y, 0)));
+    assertEquals(2, pc.count());
+
+    last.and = null;
+    pc.recomputeCount();
+    pc.resetHashCode();
+
+    assertFalse(pc.hasConstraint(gt(y, 0)));
+    assertTrue(pc.hasConstraint(gt(x, 0)));
+    assertEquals(1, pc.count());
+  }
+}
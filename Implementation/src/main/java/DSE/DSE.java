@@ -195,7 +195,9 @@ public class DSE {
             this.path,
             instrumentation.getOldClassName(),
             instrumentation.getNewClassName(),
-            this.timeout
+            this.timeout,
+            symbEx.getSummaryCollector(instrumentation.getOldClassName()),
+            symbEx.getSummaryCollector(instrumentation.getNewClassName())
         );
         summary.checkEquivalence();
 
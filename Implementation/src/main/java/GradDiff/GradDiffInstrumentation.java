@@ -19,11 +19,13 @@ import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
 import com.microsoft.z3.FuncDecl;
 import equiv.checking.ProjectPaths;
+import equiv.checking.SummaryIndex;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class GradDiffInstrumentation extends DSEInstrumentation {
@@ -63,15 +65,41 @@ public class GradDiffInstrumentation extends DSEInstrumentation {
         if (context == null || summaryOld == null || summaryNew == null || variables == null) {
             return "";
         }
+        return this.getNextToRefine(context, summaryOld, summaryNew, SummaryIndex.of(summaryOld), SummaryIndex.of(summaryNew), variables);
+    }
+
+    @Override
+    public String getNextToRefine(Context context, BoolExpr summaryOld, BoolExpr summaryNew, SummaryIndex indexOld, SummaryIndex indexNew) throws IOException {
+        if (context == null || summaryOld == null || summaryNew == null) {
+            return "";
+        }
+        Map<String, Expr<?>> variables = new HashMap<>(indexOld.getVariables());
+        variables.putAll(indexNew.getVariables());
+        return this.getNextToRefine(context, summaryOld, summaryNew, indexOld, indexNew, variables);
+    }
 
+    private String getNextToRefine(
+        Context context,
+        BoolExpr summaryOld,
+        BoolExpr summaryNew,
+        SummaryIndex indexOld,
+        SummaryIndex indexNew,
+        Map<String, Expr<?>> variables
+    ) throws IOException {
         HashMap<String, Pair<FuncDecl<?>, HashSet<Expr<?>>>> functionsInstances = new HashMap<>();
-        HashMap<Expr<?>, Integer> uFunctionsOld = new HashMap<>();
-        HashMap<Expr<?>, Integer> uFunctionsNew = new HashMap<>();
-        HashSet<Expr<?>> procCalls = new HashSet<>();
+        HashMap<Expr<?>, Integer> uFunctionsOld = new HashMap<>(indexOld.getUFunctions());
+        HashMap<Expr<?>, Integer> uFunctionsNew = new HashMap<>(indexNew.getUFunctions());
+        HashSet<Expr<?>> procCalls = new HashSet<>(indexOld.getProcCalls());
+        procCalls.addAll(indexNew.getProcCalls());
 
         //***To be added for trigo functions ******/
-        this.createInstances(summaryOld, functionsInstances, uFunctionsOld, procCalls);
-        this.createInstances(summaryNew, functionsInstances, uFunctionsNew, procCalls);
+        for (SummaryIndex index : Arrays.asList(indexOld, indexNew)) {
+            index.getFunctionsInstances().forEach((name, instances) -> functionsInstances
+                .computeIfAbsent(name, n -> new MutablePair<>(instances.getKey(), new HashSet<>()))
+                .getValue()
+                .addAll(instances.getValue())
+            );
+        }
 
         //************************************************************Random*********************************************************************/
 
@@ -214,6 +242,11 @@ public class GradDiffInstrumentation extends DSEInstrumentation {
         Expr<?>[] vars = substList.toArray(new Expr[0]);
         //System.out.println("All Vars : " + Arrays.toString(vars));
         //***********************************************************/
+        // The queries are written on this thread (the z3 context isn't
+        // thread-safe), each to its own file, so that the z3 processes
+        // can then check all of them at the same time.
+        List<String> queryFiles = new ArrayList<>();
+        int k = 0;
         for (String uFunctionName : uFunctionNamesOrdered) {
             List<Expr<?>> quantiferslist = new ArrayList<>();
             for (Expr<?> var : vars) {//we add the variables
@@ -234,7 +267,8 @@ public class GradDiffInstrumentation extends DSEInstrumentation {
                 j++;
             }
             //System.out.println("after:" +forAll.toString());
-            FileWriter fw = new FileWriter(this.path + "/H1Checking.smt2");
+            String queryFile = this.path + "/H1Checking" + k++ + ".smt2";
+            FileWriter fw = new FileWriter(queryFile);
             BufferedWriter bw = new BufferedWriter(fw);
             //(declare-const UF_bess_1_0 Real) (assert + forall + ) (check-sat)
             //***************Get Type************/
@@ -250,15 +284,71 @@ public class GradDiffInstrumentation extends DSEInstrumentation {
             bw.write("(check-sat)");
             bw.close();
             fw.close();
-            String mainCommand = ProjectPaths.z3 + " -smt2 " + this.path + "/H1Checking.smt2 -T:" + this.timeout / 1000;
-            //if (debug) System.out.println(mainCommand);
-            Process p = Runtime.getRuntime().exec(mainCommand);
-            BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            String answer = in.readLine();
-            //*********************************************/
-            if (answer != null && answer.equals("sat")) {
-                functions.add(uFunctionName);
+            queryFiles.add(queryFile);
+        }
+        //*********************************************/
+        List<Boolean> results = this.checkH1Queries(queryFiles);
+        for (int i = 0; i < uFunctionNamesOrdered.size(); i++) {
+            if (results.get(i)) {
+                functions.add(uFunctionNamesOrdered.get(i));
+            }
+        }
+    }
+
+    /**
+     * This function runs z3 on all H1 queries at the same time (bounded by the number of cores)
+     * If one of the checks fails or the calling thread is interrupted, the remaining checks are cancelled
+     * @param queryFiles the .smt2 files of the queries
+     * @return for each query, whether z3 answered sat
+     */
+    private List<Boolean> checkH1Queries(List<String> queryFiles) throws IOException {
+        if (queryFiles.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int threadCount = Math.min(queryFiles.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (String queryFile : queryFiles) {
+                futures.add(executor.submit(() -> this.checkH1Query(queryFile)));
+            }
+
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            // Interrupts (and thereby kills the z3 processes of) all unfinished checks.
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean checkH1Query(String queryFile) throws IOException, InterruptedException {
+        // The answer is written to a file instead of a pipe so that waiting
+        // for the process (unlike reading from it) can be interrupted.
+        File answerFile = new File(queryFile.replace(".smt2", ".txt"));
+        ProcessBuilder builder = new ProcessBuilder(ProjectPaths.z3, "-smt2", queryFile, "-T:" + this.timeout / 1000);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(answerFile);
+        Process p = builder.start();
+        try {
+            p.waitFor();
+            try (BufferedReader in = new BufferedReader(new FileReader(answerFile))) {
+                String answer = in.readLine();
+                return answer != null && answer.equals("sat");
             }
+        } finally {
+            p.destroyForcibly();
         }
     }
 
@@ -335,45 +425,6 @@ public class GradDiffInstrumentation extends DSEInstrumentation {
         return results;
     }
 
-    /**
-     * This function fills the map object that describes the unintepreted functions inside an expression expr
-     * @param expr a Z3 expression
-     * @param functionsInstances a map from a function name to the actual function declaration and all its occurrences
-     * @param uFunctions the list of occurrences of each expression
-     * @param procCalls a list of function calls
-     */
-    public void createInstances(
-        Expr<?> expr,
-        Map<String, Pair<FuncDecl<?>, HashSet<Expr<?>>>> functionsInstances,
-        Map<Expr<?>, Integer> uFunctions,
-        HashSet<Expr<?>> procCalls
-    ) {
-        if (expr == null || !expr.isApp()) {
-            return;
-        }
-
-        FuncDecl<?> func = expr.getFuncDecl();
-        String funcName = func.getName().toString();
-        Expr<?>[] args = expr.getArgs();
-        for (Expr<?> arg : args) {
-            this.createInstances(arg, functionsInstances, uFunctions, procCalls);
-        }
-
-        if (funcName.startsWith("UF_")) {
-            if (functionsInstances.containsKey(funcName)) {
-                functionsInstances.get(funcName).getValue().add(expr);
-                uFunctions.merge(expr, 1, Integer::sum);
-            } else {
-                HashSet<Expr<?>> set = new HashSet<>();
-                set.add(expr);
-                functionsInstances.put(funcName, new MutablePair<>(func, set));
-                uFunctions.put(expr, 1);
-            }
-        } else if (funcName.startsWith("AF_")) {
-            procCalls.add(expr);
-        }
-    }
-
     /**
      * This is a helper function to obtain every statement mapped to a given uninterpreted function
      * The output is in the form Map : Line number --> Pair (variable, [Number of control statements, Number of non linear arithmetic, Is mixed ?]
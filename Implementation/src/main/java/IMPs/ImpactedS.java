@@ -250,7 +250,9 @@ public class ImpactedS {
             classNameOld + this.toolName + iteration,
             classNameNew + this.toolName + iteration,
             this.timeout,
-            programSlicer.getImpactedStatements()
+            programSlicer.getImpactedStatements(),
+            symbEx.getSummaryCollector(classNameOld + this.toolName + iteration),
+            symbEx.getSummaryCollector(classNameNew + this.toolName + iteration)
         );
         summary.checkEquivalence();
 
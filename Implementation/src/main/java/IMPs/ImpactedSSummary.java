@@ -12,6 +12,7 @@
 package IMPs;
 
 import equiv.checking.SMTSummary;
+import equiv.checking.SummaryCollector;
 
 import java.util.ArrayList;
 
@@ -19,10 +20,31 @@ public class ImpactedSSummary extends SMTSummary {
     private final ArrayList<Integer> impacted; //the list of impacted statements
 
     public ImpactedSSummary(String path, String oldFileName, String newFileName, int timeout, ArrayList<Integer> impacted) {
-        super(path, oldFileName, newFileName, timeout);
+        this(path, oldFileName, newFileName, timeout, impacted, null, null);
+    }
+
+    public ImpactedSSummary(
+        String path,
+        String oldFileName,
+        String newFileName,
+        int timeout,
+        ArrayList<Integer> impacted,
+        SummaryCollector oldSummaryCollector,
+        SummaryCollector newSummaryCollector
+    ) {
+        super(path, oldFileName, newFileName, timeout, oldSummaryCollector, newSummaryCollector);
         this.impacted = impacted;
     }
 
+    /**
+     * This functions checks if a constraint or return statement of a collected path summary is impacted
+     * @param lineNumber the line of the constraint or return statement
+     */
+    @Override
+    protected boolean isImpacted(int lineNumber) {
+        return this.impacted.contains(lineNumber);
+    }
+
     /**
      * This functions parse a constraint if it is linked to an impacted statement, returns null otherwise
      * @param st a JPF constraint as a string
@@ -149,6 +149,7 @@ public class Runner{
                 RunRepository.insertOrUpdate(finishedRun);
 
                 TimeRepository.insertOrUpdate(TimeFactory.create(finishedRun, StopWatches.getTimes()));
+                Repository.close();
             } catch (Throwable e) {
                 e.printStackTrace(systemError);
             }
@@ -196,6 +197,7 @@ public class Runner{
         }
 
         TimeRepository.insertOrUpdate(TimeFactory.create(finishedRun, StopWatches.getTimes()));
+        Repository.close();
     }
 
     private static String getToolVariant(String tool, String strategy) {
@@ -175,7 +175,9 @@ public class SE {
             this.path,
             instrumentation.getOldClassName(),
             instrumentation.getNewClassName(),
-            this.timeout
+            this.timeout,
+            symbEx.getSummaryCollector(instrumentation.getOldClassName()),
+            symbEx.getSummaryCollector(instrumentation.getNewClassName())
         );
         summary.checkEquivalence();
 
@@ -0,0 +1,114 @@
+package differencing;
+
+import Runner.Runner;
+import differencing.repositories.Repository;
+import differencing.repositories.WriteQueue;
+import equiv.checking.InMemoryCompiler;
+import equiv.checking.OutputParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs a list of benchmark runs (jobs) one after the other in a single,
+ * long-lived JVM, so that JVM startup, JIT warm-up, loading the z3 native
+ * library, and loading JPF itself are only paid once instead of per run.
+ * <p>
+ * Each line of the jobs file describes one job:
+ * [base|diff] [timeout] [arguments ...]
+ * - base: Run Runner.Runner with the given arguments.
+ * - diff: Run differencing.DifferencingRunner with the given arguments.
+ * - [timeout]: Maximum time (in seconds) that the job may take.
+ * <p>
+ * The static state of the runners is reset between jobs. Since JPF cannot be
+ * stopped safely from the outside, a job that exceeds its timeout is handled
+ * the same way as when running the runners directly: the JVM exits (with
+ * exit code 124, like the timeout command), and the shutdown hooks of the
+ * runner write the results of the timed out run to the DB. Jobs are recorded
+ * in [jobs-file].progress before they are started, so a restarted daemon
+ * continues with the job after the timed out (or crashed) one.
+ */
+public class BenchmarkDaemon {
+    public static final int TIMEOUT_EXIT_CODE = 124;
+
+    public static void main(String[] args) throws Exception {
+        // Arguments: [jobs-file]
+        Path jobsFile = Paths.get(args[0]);
+        Path progressFile = Paths.get(args[0] + ".progress");
+
+        List<String> jobs = Files.readAllLines(jobsFile, StandardCharsets.UTF_8);
+        List<String> startedJobs = progressFile.toFile().exists()
+            ? Files.readAllLines(progressFile, StandardCharsets.UTF_8)
+            : Collections.emptyList();
+
+        PrintStream systemOutput = System.out;
+        PrintStream systemError = System.err;
+
+        for (int i = startedJobs.size(); i < jobs.size(); i++) {
+            String job = jobs.get(i).trim();
+
+            Files.write(
+                progressFile,
+                (job + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND
+            );
+
+            if (job.isEmpty()) {
+                continue;
+            }
+
+            systemOutput.println("[" + (i + 1) + "/" + jobs.size() + "] " + job);
+
+            String[] parts = job.split("\\s+");
+            String runner = parts[0];
+            int timeout = Integer.parseInt(parts[1]);
+            String[] runnerArgs = Arrays.copyOfRange(parts, 2, parts.length);
+
+            reset();
+
+            Thread thread = new Thread(() -> {
+                try {
+                    if (runner.equals("base")) {
+                        Runner.main(runnerArgs);
+                    } else if (runner.equals("diff")) {
+                        DifferencingRunner.main(runnerArgs);
+                    } else {
+                        throw new RuntimeException("Unknown runner '" + runner + "'.");
+                    }
+                } catch (Throwable e) {
+                    e.printStackTrace(systemError);
+                }
+            }, "benchmark-job");
+            thread.start();
+            thread.join(timeout * 1000L);
+
+            if (thread.isAlive()) {
+                systemError.println("TIMEOUT: " + job);
+                System.exit(TIMEOUT_EXIT_CODE);
+            }
+
+            System.out.flush();
+            System.err.flush();
+            System.setOut(systemOutput);
+            System.setErr(systemError);
+        }
+    }
+
+    private static void reset() throws IOException {
+        // Also discards a DB write failure of the previous job, which
+        // has already been reported by the runner of that job.
+        WriteQueue.reset();
+        Repository.close();
+        StopWatches.reset();
+        OutputParser.reset();
+        MemoryBudget.reset();
+        InMemoryCompiler.reset();
+    }
+}
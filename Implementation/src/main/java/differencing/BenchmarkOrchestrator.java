@@ -0,0 +1,187 @@
+package differencing;
+
+import differencing.repositories.Repository;
+import differencing.repositories.RunRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a list of benchmark runs (jobs) in parallel, each in its own child
+ * JVM, so that the runs are isolated from each other the same way as when
+ * they are started by RunningBenchmarks.sh one after the other.
+ * <p>
+ * Each line of the jobs file describes one job:
+ * [benchmark] [tool] [base|diff] [timeout] [arguments ...]
+ * - [benchmark]: Benchmark name, e.g., Airy/MAX/Eq.
+ * - [tool]: Tool name as in the settings table, e.g., PASDA-base.
+ * - base: Run Runner.Runner with the given arguments.
+ * - diff: Run differencing.DifferencingRunner with the given arguments.
+ * - [timeout]: Maximum time (in seconds) that the job may take.
+ * <p>
+ * The jobs of a benchmark share the files in its instrumented directory,
+ * and the diff tools rely on the outputs of the base tools, so the jobs of
+ * a benchmark are run one after the other (in the order of the jobs file).
+ * The benchmarks are handed to a work-stealing pool, longest first (based
+ * on the average runtime of earlier runs in the DB), so that the long
+ * benchmarks don't end up at the end of the sweep.
+ * <p>
+ * Each job is run under the timeout command, which (on a timeout) sends a
+ * SIGTERM to the child JVM and all processes it started (e.g., z3), so the
+ * shutdown hooks of the runners can still write the results of the timed
+ * out run to the DB. Finished jobs are recorded in [jobs-file].progress, so
+ * a restarted orchestrator continues with the jobs that are not finished.
+ * The output of each job is written to [jobs-file].logs/[line].log.
+ */
+public class BenchmarkOrchestrator {
+    private static final int TIMEOUT_EXIT_CODE = 124;
+
+    // Time (in seconds) that a timed out job gets
+    // to shut down before it is killed.
+    private static final int KILL_AFTER = 30;
+
+    public static void main(String[] args) throws Exception {
+        // Arguments: [jobs-file] [parallelism] [memory-limit]
+        // - [parallelism]: Number of jobs that run at the same time (default: number of cores).
+        // - [memory-limit]: Maximum heap size of each job, e.g., 4g (default: JVM default).
+        Path jobsFile = Paths.get(args[0]);
+        Path progressFile = Paths.get(args[0] + ".progress");
+        Path logsDir = Paths.get(args[0] + ".logs");
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String memoryLimit = args.length > 2 ? args[2] : null;
+
+        Set<String> finishedJobs = progressFile.toFile().exists()
+            ? new HashSet<>(Files.readAllLines(progressFile, StandardCharsets.UTF_8))
+            : Collections.emptySet();
+
+        List<String> lines = Files.readAllLines(jobsFile, StandardCharsets.UTF_8);
+        Map<String, List<Job>> benchmarks = new LinkedHashMap<>();
+        int jobCount = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || finishedJobs.contains(line)) {
+                continue;
+            }
+            Job job = new Job(i + 1, line);
+            benchmarks.computeIfAbsent(job.benchmark, b -> new ArrayList<>()).add(job);
+            jobCount++;
+        }
+
+        Map<String, Double> runtimes = RunRepository.getAverageRuntimes();
+        Repository.close();
+
+        List<List<Job>> queue = new ArrayList<>(benchmarks.values());
+        Map<List<Job>, Double> estimates = new IdentityHashMap<>();
+        for (List<Job> jobs : queue) {
+            double estimate = 0;
+            for (Job job : jobs) {
+                // Jobs that never ran before are assumed to take until their timeout.
+                Double runtime = runtimes.get(job.benchmark + " " + job.tool + " " + job.timeout);
+                estimate += runtime == null ? job.timeout : Math.min(runtime, job.timeout);
+            }
+            estimates.put(jobs, estimate);
+        }
+        queue.sort(Comparator.comparing(estimates::get).reversed());
+
+        logsDir.toFile().mkdirs();
+
+        System.out.println("Running " + jobCount + " jobs (" + queue.size() + " benchmarks) with parallelism " + parallelism + ".");
+
+        AtomicInteger finishedCount = new AtomicInteger(0);
+        int total = jobCount;
+
+        ExecutorService executor = Executors.newWorkStealingPool(parallelism);
+        for (List<Job> jobs : queue) {
+            executor.submit(() -> {
+                for (Job job : jobs) {
+                    try {
+                        long start = System.currentTimeMillis();
+                        int exitCode = run(job, memoryLimit, logsDir.resolve(job.lineNumber + ".log").toFile());
+                        float time = (System.currentTimeMillis() - start) / 1000f;
+
+                        synchronized (BenchmarkOrchestrator.class) {
+                            Files.write(
+                                progressFile,
+                                (job.line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                                StandardOpenOption.CREATE, StandardOpenOption.APPEND
+                            );
+                            String status = exitCode == TIMEOUT_EXIT_CODE ? "TIMEOUT" : "exit code " + exitCode;
+                            System.out.println("[" + finishedCount.incrementAndGet() + "/" + total + "] " + job.line + " (" + status + ", " + time + "s)");
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    private static int run(Job job, String memoryLimit, File logFile) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("timeout");
+        command.add("--kill-after=" + KILL_AFTER + "s");
+        command.add(job.timeout + "s");
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (memoryLimit != null) {
+            command.add("-Xmx" + memoryLimit);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.addAll(ChildJvms.getPropertyArguments());
+        if (job.runner.equals("base")) {
+            command.add("Runner.Runner");
+        } else if (job.runner.equals("diff")) {
+            command.add("differencing.DifferencingRunner");
+        } else {
+            throw new RuntimeException("Unknown runner '" + job.runner + "'.");
+        }
+        command.addAll(job.arguments);
+
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(logFile)
+            .start();
+
+        // The timeout command should already have stopped the job by now,
+        // this is only a safeguard against jobs that can't be stopped.
+        if (!process.waitFor(job.timeout + 2L * KILL_AFTER, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            return process.waitFor();
+        }
+        return process.exitValue();
+    }
+
+    private static class Job {
+        private final int lineNumber;
+        private final String line;
+        private final String benchmark;
+        private final String tool;
+        private final String runner;
+        private final int timeout;
+        private final List<String> arguments;
+
+        private Job(int lineNumber, String line) {
+            String[] parts = line.split("\\s+");
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.benchmark = parts[0];
+            this.tool = parts[1];
+            this.runner = parts[2];
+            this.timeout = Integer.parseInt(parts[3]);
+            this.arguments = Arrays.asList(parts).subList(4, parts.length);
+        }
+    }
+}
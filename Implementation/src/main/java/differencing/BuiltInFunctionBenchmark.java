@@ -0,0 +1,192 @@
+package differencing;
+
+import com.microsoft.z3.*;
+import differencing.domain.*;
+import differencing.domain.Model;
+import differencing.transformer.ModelToZ3Transformer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Micro-benchmark for the satisfiability checks of PC + NEQ queries that
+ * use built-in functions (sin, cos, atan, ...), shaped like the Airy,
+ * Bess, and gam benchmarks, with a growing number of PC conjuncts.
+ * <p>
+ * It compares checking the query directly (as SatisfiabilityChecker does)
+ * with the former approach, which rendered the query as SMT-LIB text,
+ * removed the declarations that shadowed the built-in functions, and
+ * parsed the text into a new solver before checking it.
+ * <p>
+ * Run with (arguments: [repetitions] [solver timeout in ms]):
+ * ./gradlew run -PmainClass=differencing.BuiltInFunctionBenchmark --args="20 500"
+ */
+public class BuiltInFunctionBenchmark {
+    private static final String BUILT_IN_DECLARATIONS = "" +
+        "(declare-fun sin (Real) Real)\n" +
+        "(declare-fun cos (Real) Real)\n" +
+        "(declare-fun atan (Real) Real)\n";
+
+    private static final int WARM_UP_REPETITIONS = 3;
+
+    public static void main(String[] args) {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        String timeout = args.length > 1 ? args[1] : "500";
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("timeout", timeout);
+
+        try (Context context = new Context(settings)) {
+            System.out.println("case   #conj  round-trip  check before  check after  status before  status after");
+            for (String name : new String[]{"Airy", "Bess", "gam"}) {
+                for (int conjuncts : new int[]{5, 20, 60}) {
+                    Model[] query = createQuery(name, conjuncts);
+                    run(context, name, conjuncts, query, repetitions);
+                }
+            }
+        }
+    }
+
+    private static void run(Context context, String name, int conjuncts, Model[] query, int repetitions) {
+        long roundTripTime = 0;
+        long beforeTime = 0;
+        long afterTime = 0;
+        Status beforeStatus = null;
+        Status afterStatus = null;
+
+        for (int i = 0; i < WARM_UP_REPETITIONS + repetitions; i++) {
+            ModelToZ3Transformer modelToZ3 = new ModelToZ3Transformer(context);
+            BoolExpr pc = (BoolExpr) modelToZ3.transform(query[0]);
+            BoolExpr neq = context.mkNot(context.mkEq(modelToZ3.transform(query[1]), modelToZ3.transform(query[2])));
+
+            long start = System.nanoTime();
+            Solver solver = context.mkSolver();
+            solver.add(pc);
+            solver.add(neq);
+            long roundTripStart = System.nanoTime();
+            Solver reparsed = roundTrip(context, solver);
+            long roundTripEnd = System.nanoTime();
+            beforeStatus = reparsed.check();
+            long beforeEnd = System.nanoTime();
+
+            solver = context.mkSolver();
+            solver.add(pc);
+            solver.add(neq);
+            afterStatus = solver.check();
+            long afterEnd = System.nanoTime();
+
+            if (i >= WARM_UP_REPETITIONS) {
+                roundTripTime += roundTripEnd - roundTripStart;
+                beforeTime += beforeEnd - start;
+                afterTime += afterEnd - beforeEnd;
+            }
+        }
+
+        System.out.printf(
+            "%-5s  %5d  %7.1f ms    %7.1f ms    %7.1f ms  %-13s  %s%n",
+            name,
+            conjuncts,
+            roundTripTime / 1e6 / repetitions,
+            beforeTime / 1e6 / repetitions,
+            afterTime / 1e6 / repetitions,
+            beforeStatus,
+            afterStatus
+        );
+    }
+
+    private static Solver roundTrip(Context context, Solver solver) {
+        // The rendered query of the former approach also contained the
+        // (shadowing) declarations of the built-in functions.
+        String query = BUILT_IN_DECLARATIONS + solver.toString();
+        query = query.replaceAll("\\(declare-fun (?:sin|cos|tan|asin|acos|atan2|atan) \\(Real\\) Real\\)", "");
+
+        Solver reparsed = context.mkSolver();
+        reparsed.fromString(query);
+        return reparsed;
+    }
+
+    /** @return The PC, the v1 result, and the v2 result of the query. */
+    private static Model[] createQuery(String name, int conjuncts) {
+        switch (name) {
+            case "Airy":
+                return createAiryQuery(conjuncts);
+            case "Bess":
+                return createBessQuery(conjuncts);
+            case "gam":
+                return createGamQuery(conjuncts);
+            default:
+                throw new RuntimeException("Unknown query '" + name + "'.");
+        }
+    }
+
+    private static Model[] createAiryQuery(int conjuncts) {
+        Expression x = new VariableReal("x");
+        Expression y = new VariableReal("y");
+
+        Expression pc = op(x, Operator.GT, y);
+        for (int i = 1; i < conjuncts; i++) {
+            Expression cos = fn(Operator.COS, op(x, Operator.PLUS, real(i)));
+            pc = op(pc, Operator.AND, op(op(cos, Operator.MUL, fn(Operator.SIN, y)), Operator.LE, real(0.5)));
+        }
+
+        Expression v1 = op(fn(Operator.SIN, x), Operator.PLUS, fn(Operator.COS, y));
+        Expression v2 = op(fn(Operator.COS, y), Operator.PLUS, fn(Operator.SIN, x));
+        return new Model[]{pc, v1, v2};
+    }
+
+    private static Model[] createBessQuery(int conjuncts) {
+        Expression x = new VariableReal("x");
+        Expression z = op(real(8.0), Operator.DIV, x);
+        Expression y = op(z, Operator.MUL, z);
+        Expression xx = op(x, Operator.MINUS, real(0.785398164));
+
+        Expression pc = op(x, Operator.GE, real(8.0));
+        for (int i = 1; i < conjuncts; i++) {
+            pc = op(pc, Operator.AND, op(fn(Operator.SIN, op(x, Operator.MUL, real(i))), Operator.LT, real(0.9)));
+        }
+
+        Expression a1 = horner(y, 1.0, -0.1098628627e-2, 0.2734510407e-4, -0.2073370639e-5, 0.2093887211e-6);
+        Expression a2 = horner(y, -0.1562499995e-1, 0.1430488765e-3, -0.6911147651e-5, 0.7621095161e-6, -0.934945152e-7);
+        Expression v1 = op(a1, Operator.MINUS, op(op(z, Operator.MUL, fn(Operator.SIN, xx)), Operator.MUL, a2));
+        Expression v2 = op(a1, Operator.MINUS, op(z, Operator.MUL, op(fn(Operator.SIN, xx), Operator.MUL, a2)));
+        return new Model[]{pc, v1, v2};
+    }
+
+    private static Model[] createGamQuery(int conjuncts) {
+        Expression x = new VariableReal("x");
+        Expression a = new VariableReal("a");
+
+        Expression pc = op(x, Operator.GT, real(0));
+        Expression sum = real(1.0);
+        for (int i = 1; i < conjuncts; i++) {
+            Expression term = op(fn(Operator.EXP, op(a, Operator.MUL, real(i))), Operator.DIV, op(x, Operator.PLUS, real(i)));
+            sum = op(sum, Operator.PLUS, term);
+            pc = op(pc, Operator.AND, op(sum, Operator.LT, real(100 * i)));
+        }
+
+        Expression v1 = op(sum, Operator.MUL, fn(Operator.ATAN, x));
+        Expression v2 = op(fn(Operator.ATAN, x), Operator.MUL, sum);
+        return new Model[]{pc, v1, v2};
+    }
+
+    /** @return c0 + y * (c1 + y * (c2 + ...)) */
+    private static Expression horner(Expression y, double... coefficients) {
+        Expression expr = real(coefficients[coefficients.length - 1]);
+        for (int i = coefficients.length - 2; i >= 0; i--) {
+            expr = op(real(coefficients[i]), Operator.PLUS, op(y, Operator.MUL, expr));
+        }
+        return expr;
+    }
+
+    private static Expression op(Expression left, Operator op, Expression right) {
+        return new Operation(left, op, right);
+    }
+
+    private static Expression fn(Operator op, Expression arg) {
+        return new Operation(arg, op, null);
+    }
+
+    private static Expression real(double value) {
+        return new ConstantReal(value);
+    }
+}
@@ -0,0 +1,101 @@
+package differencing;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Starts child JVMs, e.g., for JPF runs (which keep most of their state in
+ * static fields and therefore can't share a JVM), and makes sure that they
+ * don't outlive this JVM: a shutdown hook destroys them if this JVM is
+ * stopped (e.g., by a timeout), and {@link #close()} destroys them once
+ * they aren't needed anymore.
+ */
+public class ChildJvms implements AutoCloseable {
+    private final List<Process> processes = new ArrayList<>();
+    private final Thread shutdownHook = new Thread(this::destroyAll);
+    private boolean isClosed = false;
+
+    public ChildJvms() {
+        Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+    }
+
+    /**
+     * @return The command that runs the given main class in a child JVM with
+     * the same java binary, class path, library path, heap and assertion
+     * options, and differencing.* / equiv.checking.* properties as this JVM.
+     */
+    public static List<String> command(Class<?> mainClass, String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(getJvmOptions());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+        command.addAll(getPropertyArguments());
+        command.add(mainClass.getName());
+        Collections.addAll(command, args);
+        return command;
+    }
+
+    /** @return The heap, stack, and assertion options that this JVM was started with. */
+    public static List<String> getJvmOptions() {
+        List<String> options = new ArrayList<>();
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-Xmx") || argument.startsWith("-Xms") || argument.startsWith("-Xss")
+                || argument.startsWith("-ea") || argument.startsWith("-enableassertions")
+                || argument.startsWith("-da") || argument.startsWith("-disableassertions")
+                || argument.startsWith("-esa") || argument.startsWith("-enablesystemassertions")) {
+                options.add(argument);
+            }
+        }
+        return options;
+    }
+
+    /** @return The differencing.* and equiv.checking.* properties of this JVM as -D arguments. */
+    public static List<String> getPropertyArguments() {
+        List<String> arguments = new ArrayList<>();
+        for (String property : System.getProperties().stringPropertyNames()) {
+            if (property.startsWith("differencing.") || property.startsWith("equiv.checking.")) {
+                arguments.add("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Starts the process and destroys it with the other child JVMs.
+     * Fails if the child JVMs have already been closed (e.g., because
+     * another child JVM failed), so no child JVM is left behind.
+     */
+    public Process start(ProcessBuilder builder) throws IOException {
+        synchronized (this.processes) {
+            if (this.isClosed) {
+                throw new IllegalStateException("The child JVMs have already been closed.");
+            }
+            Process process = builder.start();
+            this.processes.add(process);
+            return process;
+        }
+    }
+
+    @Override
+    public void close() {
+        this.destroyAll();
+        try {
+            Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is already shutting down, the hook takes care of the processes.
+        }
+    }
+
+    private void destroyAll() {
+        synchronized (this.processes) {
+            this.isClosed = true;
+            this.processes.forEach(Process::destroyForcibly);
+        }
+    }
+}
@@ -7,9 +7,12 @@ import differencing.domain.Model;
 import differencing.models.Iteration;
 import differencing.models.Partition;
 import differencing.repositories.PartitionRepository;
+import differencing.repositories.Repository;
+import differencing.repositories.WriteQueue;
 import differencing.transformer.ModelToZ3Transformer;
 import differencing.transformer.SpfToModelTransformer;
 import differencing.transformer.ValueToModelTransformer;
+import equiv.checking.SummaryIndex;
 import gov.nasa.jpf.PropertyListenerAdapter;
 import gov.nasa.jpf.jvm.bytecode.JVMReturnInstruction;
 import gov.nasa.jpf.search.Search;
@@ -21,7 +24,7 @@ import gov.nasa.jpf.vm.*;
 
 import java.util.*;
 
-public class DifferencingListener extends PropertyListenerAdapter implements AutoCloseable {
+public class DifferencingListener extends PropertyListenerAdapter implements InstructionSubscriber, AutoCloseable {
     private final Iteration iteration;
     private final MethodSpec areErrorsEquivalentSpec;
     private final MethodSpec areResultsEquivalentSpec;
@@ -48,18 +51,32 @@ public class DifferencingListener extends PropertyListenerAdapter implements Aut
     private final Context context = new Context();
     private final ModelToZ3Transformer modelToZ3 = new ModelToZ3Transformer(this.context);
 
-    private BoolExpr v1Summary = null;
-    private BoolExpr v2Summary = null;
-    private Map<String, Expr<?>> variables = new HashMap<>();
+    private final SummaryBuilder v1Summary = new SummaryBuilder(this.context);
+    private final SummaryBuilder v2Summary = new SummaryBuilder(this.context);
+    private final Map<Sort, Expr<?>> retConsts = new HashMap<>();
 
     public DifferencingListener(Iteration iteration, DifferencingParameters parameters, int solverTimeout) {
+        this(iteration, parameters, solverTimeout, false);
+    }
+
+    public DifferencingListener(Iteration iteration, DifferencingParameters parameters, int solverTimeout, boolean isIncrementalSolving) {
+        this(iteration, parameters, solverTimeout, isIncrementalSolving, null);
+    }
+
+    public DifferencingListener(
+        Iteration iteration,
+        DifferencingParameters parameters,
+        int solverTimeout,
+        boolean isIncrementalSolving,
+        SolverResultCache solverCache
+    ) {
         StopWatches.start("iteration-" + iteration.iteration + ":partition-classification");
 
         this.iteration = iteration;
         this.areErrorsEquivalentSpec = MethodSpec.createMethodSpec("*.IDiff" + parameters.getToolName() + iteration.iteration + ".areErrorsEquivalent");
         this.areResultsEquivalentSpec = MethodSpec.createMethodSpec("*.IDiff" + parameters.getToolName() + iteration.iteration + ".areResultsEquivalent");
         this.runSpec = MethodSpec.createMethodSpec("*.IDiff" + parameters.getToolName() + iteration.iteration + ".run");
-        this.satChecker = new SatisfiabilityChecker(solverTimeout);
+        this.satChecker = new SatisfiabilityChecker(solverTimeout, isIncrementalSolving, solverCache);
 
         StopWatches.suspend("iteration-" + iteration.iteration + ":partition-classification");
     }
@@ -77,51 +94,84 @@ public class DifferencingListener extends PropertyListenerAdapter implements Aut
     }
 
     public BoolExpr getV1Summary() {
-        return this.v1Summary;
+        return this.v1Summary.getSummary();
     }
 
     public BoolExpr getV2Summary() {
-        return this.v2Summary;
+        return this.v2Summary.getSummary();
+    }
+
+    public SummaryIndex getV1SummaryIndex() {
+        return this.v1Summary.getIndex();
+    }
+
+    public SummaryIndex getV2SummaryIndex() {
+        return this.v2Summary.getIndex();
     }
 
     public Map<String ,Expr<?>> getVariables() {
-        return this.variables;
+        Map<String, Expr<?>> variables = new HashMap<>(this.v1Summary.getIndex().getVariables());
+        variables.putAll(this.v2Summary.getIndex().getVariables());
+        return variables;
     }
 
     public Set<Partition> getPartitions() {
         return this.partitions;
     }
 
-    public boolean isDepthLimited() {
-        return this.partitions.stream().anyMatch(p -> p.result == Classification.DEPTH_LIMITED);
+    /**
+     * Sets the number of the first partition, e.g., so that the partitions
+     * of different ParallelDifferencing workers don't have the same numbers.
+     */
+    public void setFirstPartitionNr(int partitionNr) {
+        this.partitionNr = partitionNr;
     }
 
-    public boolean hasUif() {
-        return this.partitions.stream().anyMatch(p -> p.hasUif);
+    /** @return The v1 summary as an SMT-LIB script (or null if there is none). */
+    public String getV1SummarySmtLib() {
+        return this.toSmtLib(this.v1Summary.getSummary());
     }
 
-    @Override
-    public void searchFinished(Search search) {
-        this.variables.putAll(this.collectVariables(this.v1Summary));
-        this.variables.putAll(this.collectVariables(this.v2Summary));
+    /** @return The v2 summary as an SMT-LIB script (or null if there is none). */
+    public String getV2SummarySmtLib() {
+        return this.toSmtLib(this.v2Summary.getSummary());
     }
 
-    private Map<String, Expr<?>> collectVariables(Expr<?> expr) {
-        if (expr == null) {
-            return Collections.emptyMap();
-        } else if (expr.isConst()) {
-            String name = expr.getFuncDecl().getName().toString();
-            if (name.startsWith("UF_") || name.startsWith("AF_")) {
-                return Collections.emptyMap();
-            }
-            return Collections.singletonMap(name, expr);
-        } else {
-            Map<String, Expr<?>> vars = new HashMap<>();
-            for (Expr<?> arg : expr.getArgs()) {
-                vars.putAll(this.collectVariables(arg));
-            }
-            return vars;
+    /**
+     * Adds the partitions and summaries that were created by a
+     * ParallelDifferencing worker to the results of this listener.
+     */
+    public void addWorkerResults(Collection<Partition> partitions, String v1SummarySmtLib, String v2SummarySmtLib) {
+        this.partitions.addAll(partitions);
+
+        this.v1Summary.addSummary(this.fromSmtLib(v1SummarySmtLib));
+        this.v2Summary.addSummary(this.fromSmtLib(v2SummarySmtLib));
+    }
+
+    private String toSmtLib(BoolExpr summary) {
+        if (summary == null) {
+            return null;
         }
+        // The solver's string representation includes all declarations.
+        Solver solver = this.context.mkSimpleSolver();
+        solver.add(summary);
+        return solver.toString();
+    }
+
+    private BoolExpr fromSmtLib(String smtLib) {
+        if (smtLib == null) {
+            return null;
+        }
+        BoolExpr[] assertions = this.context.parseSMTLIB2String(smtLib, null, null, null, null);
+        return assertions.length == 1 ? assertions[0] : this.context.mkAnd(assertions);
+    }
+
+    public boolean isDepthLimited() {
+        return this.partitions.stream().anyMatch(p -> p.result == Classification.DEPTH_LIMITED);
+    }
+
+    public boolean hasUif() {
+        return this.partitions.stream().anyMatch(p -> p.hasUif);
     }
 
     @Override
@@ -146,6 +196,22 @@ public class DifferencingListener extends PropertyListenerAdapter implements Aut
         this.startNextPartition();
     }
 
+    @Override
+    public boolean isSubscribedToExecuteInstruction(Instruction instruction) {
+        if (!(instruction instanceof JVMReturnInstruction)) {
+            return false;
+        }
+        MethodInfo mi = instruction.getMethodInfo();
+        return this.runSpec.matches(mi)
+            || this.areErrorsEquivalentSpec.matches(mi)
+            || this.areResultsEquivalentSpec.matches(mi);
+    }
+
+    @Override
+    public boolean isSubscribedToInstructionExecuted(Instruction instruction) {
+        return false;
+    }
+
     @Override
     public void executeInstruction(VM vm, ThreadInfo currentThread, Instruction instructionToExecute) {
         if (!(instructionToExecute instanceof JVMReturnInstruction)) {
@@ -232,8 +298,8 @@ public class DifferencingListener extends PropertyListenerAdapter implements Aut
             Model v1Model = v1IsConcrete ? this.valToModel.transform(v1Value) : this.spfToModel.transform(v1Expression);
             Model v2Model = v2IsConcrete ? this.valToModel.transform(v2Value) : this.spfToModel.transform(v2Expression);
 
-            this.v1Summary = this.addPartitionResultToSummary(this.v1Summary, pcModel, v1Model);
-            this.v2Summary = this.addPartitionResultToSummary(this.v2Summary, pcModel, v2Model);
+            this.addPartitionResultToSummary(this.v1Summary, pcModel, v1Model);
+            this.addPartitionResultToSummary(this.v2Summary, pcModel, v2Model);
 
             this.partitionPcConstraintCount = this.getConstraintCount(pcConstraint);
 
@@ -270,12 +336,12 @@ public class DifferencingListener extends PropertyListenerAdapter implements Aut
         }
     }
 
-    private BoolExpr addPartitionResultToSummary(BoolExpr summary, Model pcModel, Model resultModel) {
+    private void addPartitionResultToSummary(SummaryBuilder summary, Model pcModel, Model resultModel) {
         BoolExpr pcExpr = (BoolExpr) this.modelToZ3.transform(pcModel);
         Expr<?> v1Expr = this.modelToZ3.transform(resultModel);
-        BoolExpr retExpr = this.context.mkEq(this.context.mkConst("Ret", v1Expr.getSort()), v1Expr);
-        BoolExpr partitionExpr = pcModel == null ? retExpr : this.context.mkAnd(pcExpr, retExpr);
-        return summary == null ? partitionExpr : this.context.mkOr(summary, partitionExpr);
+        Expr<?> retConst = this.retConsts.computeIfAbsent(v1Expr.getSort(), sort -> this.context.mkConst("Ret", sort));
+        BoolExpr retExpr = this.context.mkEq(retConst, v1Expr);
+        summary.addPartition(pcModel == null ? retExpr : this.context.mkAnd(pcExpr, retExpr));
     }
 
     private void startNextPartition() {
@@ -283,8 +349,11 @@ public class DifferencingListener extends PropertyListenerAdapter implements Aut
         StopWatches.resume("iteration-" + iteration.iteration + ":partition-classification");
 
         if (this.partitionClassification == null) {
+            // There's no PC yet if the iteration timed out before the
+            // first choice, e.g., in a ParallelDifferencing worker that
+            // started after the deadline.
             PathCondition pathCondition = PathCondition.getPC(VM.getVM());
-            Constraint pcConstraint = pathCondition.header;
+            Constraint pcConstraint = pathCondition == null ? null : pathCondition.header;
             Model pcModel = this.spfToModel.transform(pcConstraint);
 
             this.partitionPcConstraintCount = this.getConstraintCount(pcConstraint);
@@ -318,8 +387,12 @@ public class DifferencingListener extends PropertyListenerAdapter implements Aut
             ""
         );
 
-        partition.id = PartitionRepository.getId(partition);
-        PartitionRepository.insertOrUpdate(partition);
+        WriteQueue.submit(() -> {
+            Repository.inTransaction(() -> {
+                partition.id = PartitionRepository.getId(partition);
+                PartitionRepository.insertOrUpdate(partition);
+            });
+        });
 
         this.partitions.add(partition);
         this.partitionNr++;
@@ -9,6 +9,7 @@ import differencing.models.Run;
 import differencing.models.Settings;
 import differencing.repositories.*;
 import equiv.checking.ChangeExtractor;
+import equiv.checking.InMemoryCompiler;
 import equiv.checking.ProjectPaths;
 import equiv.checking.SourceInstrumentation;
 import freemarker.template.Configuration;
@@ -29,6 +30,38 @@ import java.nio.file.Paths;
 import java.util.*;
 
 public class DifferencingRunner {
+    // Checks the PC, NEQ, and EQ queries of each partition on a single
+    // incremental solver (see SatisfiabilityChecker). Enable with:
+    // java -Ddifferencing.incremental-solving=true -jar ...
+    static final boolean IS_INCREMENTAL_SOLVING = Boolean.getBoolean("differencing.incremental-solving");
+
+    // Reuses the results of PC, NEQ, and EQ checks across iterations and runs
+    // (see SolverResultCache). Enable with:
+    // java -Ddifferencing.solver-cache=analysis/results/solver-cache.db -jar ...
+    static final String SOLVER_CACHE_PATH = System.getProperty("differencing.solver-cache");
+    static final int SOLVER_CACHE_SIZE = Integer.getInteger("differencing.solver-cache-size", 1000000);
+
+    // Explores the differencing driver with the given number of worker JVMs
+    // (see ParallelDifferencing). Enable with:
+    // java -Ddifferencing.parallel-workers=4 -jar ...
+    private static final int PARALLEL_WORKERS = Integer.getInteger("differencing.parallel-workers", 1);
+
+    // The symbolic states of the differencing runs practically never match
+    // (each path has its own PC), so the search doesn't store states for
+    // state matching by default, i.e., states aren't serialized and hashed
+    // after every transition and the search explores the execution tree.
+    // Enable state matching (e.g., to compare the runtimes) with:
+    // java -Ddifferencing.state-matching=true -jar ...
+    private static final boolean IS_STATE_MATCHING = Boolean.getBoolean("differencing.state-matching");
+
+    // The search backtracks after every path, so the heap is stored on
+    // every transition. By default, the runs use the copying heap (OVHeap)
+    // of JPF's default configuration. JPF's persistent heap (PSIMHeap)
+    // shares all unchanged objects with the previous state's snapshot
+    // instead of copying the whole object vector. Enable it with:
+    // java -Ddifferencing.persistent-heap=true -jar ...
+    private static final boolean IS_PERSISTENT_HEAP = Boolean.getBoolean("differencing.persistent-heap");
+
     private final Configuration freeMarkerConfiguration;
 
     public static void main(String[] args) throws Exception {
@@ -111,6 +144,8 @@ public class DifferencingRunner {
         Map<Integer, Iteration> iterations = new HashMap<>();
         Map<Integer, DifferencingListener> diffListeners = new HashMap<>();
 
+        SolverResultCache solverCache = SOLVER_CACHE_PATH == null ? null : new SolverResultCache(SOLVER_CACHE_PATH, SOLVER_CACHE_SIZE);
+
         //----------------------------------------------------------------------
         // "Redirect" output to log files.
 
@@ -129,6 +164,11 @@ public class DifferencingRunner {
 
         Thread shutdownHook = new Thread(() -> {
             try {
+                // The symbolic execution might still be running, so stop
+                // accepting its writes and execute the pending ones before
+                // the iteration is finalized and the connection is closed.
+                WriteQueue.shutdown();
+
                 Iteration currentIteration = iterations.get(iterations.size());
                 DifferencingListener diffListener = diffListeners.get(currentIteration.iteration);
 
@@ -138,6 +178,7 @@ public class DifferencingRunner {
                 Run finishedRun = this.finalizeRun(run, iterations, true, false, "");
 
                 TimeRepository.insertOrUpdate(TimeFactory.create(finishedRun, StopWatches.getTimes()));
+                Repository.close();
 
                 systemError.println("TIMEOUT: " + parameters.getTargetDirectory() + " -> " + finishedRun.result);
             } catch (Throwable e) {
@@ -180,12 +221,7 @@ public class DifferencingRunner {
 
                 parameters.setIteration(iteration.iteration);
 
-                IgnoreUnreachablePathsListener unreachableListener = new IgnoreUnreachablePathsListener(solverTimeout);
-                ExecutionListener execListener = new ExecutionListener(iteration, parameters);
-                PathConditionListener pcListener = new PathConditionListener(iteration, parameters);
-                DifferencingListener diffListener = new DifferencingListener(iteration, parameters, solverTimeout);
-
-                TimeoutChecker timeoutChecker = new TimeoutChecker(diffListener, iteration, iterationTimeout);
+                DifferencingListener diffListener = new DifferencingListener(iteration, parameters, solverTimeout, IS_INCREMENTAL_SOLVING, solverCache);
 
                 diffListeners.put(iteration.iteration, diffListener);
                 if (diffListeners.containsKey(iteration.iteration - 1)) {
@@ -208,22 +244,52 @@ public class DifferencingRunner {
                     instrumentation.runInstrumentation(iteration.iteration, changes);
 
                     File javaFile = this.createDifferencingDriverClass(parameters);
-                    this.compile(ProjectPaths.classpath, javaFile);
+                    if (InMemoryCompiler.IS_ENABLED) {
+                        InMemoryCompiler.compile(javaFile);
+                    } else {
+                        this.compile(ProjectPaths.classpath, javaFile);
+                    }
 
                     StopWatches.stop("iteration-" + iteration.iteration + ":instrumentation");
                     StopWatches.start("iteration-" + iteration.iteration + ":symbolic-execution");
 
                     File configFile = this.createDifferencingJpfConfiguration(parameters, solverTimeout, depthLimit);
 
-                    Config config = JPF.createConfig(new String[]{configFile.getAbsolutePath()});
-                    JPF jpf = new JPF(config);
-                    jpf.addListener(unreachableListener);
-                    jpf.addListener(timeoutChecker);
-                    jpf.addListener(new SymbolicListener(config, jpf));
-                    jpf.addListener(execListener);
-                    jpf.addListener(pcListener);
-                    jpf.addListener(diffListener);
-                    jpf.run();
+                    if (PARALLEL_WORKERS > 1) {
+                        float remainingTime = iterationTimeout - StopWatches.getTime("iteration-" + iteration.iteration);
+                        long deadline = System.currentTimeMillis() + (long) (remainingTime * 1000);
+                        new ParallelDifferencing(parameters, iteration, PARALLEL_WORKERS, solverTimeout, deadline)
+                            .run(configFile, diffListener);
+                    } else {
+                        Config config = JPF.createConfig(new String[]{configFile.getAbsolutePath()});
+                        JPF jpf = new JPF(config);
+
+                        IgnoreUnreachablePathsListener unreachableListener = new IgnoreUnreachablePathsListener(solverTimeout, solverCache);
+                        ExecutionListener execListener = new ExecutionListener(iteration, parameters);
+                        PathConditionListener pcListener = new PathConditionListener(iteration, parameters);
+                        TimeoutChecker timeoutChecker = new TimeoutChecker(diffListener, iteration, iterationTimeout);
+
+                        jpf.addListener(unreachableListener);
+                        jpf.addListener(timeoutChecker);
+                        jpf.addListener(new SymbolicListener(config, jpf));
+                        jpf.addListener(execListener);
+                        jpf.addListener(pcListener);
+                        jpf.addListener(diffListener);
+
+                        // The peak used heap is recorded per iteration.
+                        MemoryBudget.reset();
+                        jpf.run();
+
+                        if (MemoryBudget.isEnabled()) {
+                            iteration.memoryBudget = MemoryBudget.getBudget();
+                            iteration.peakUsedMemory = MemoryBudget.getPeakUsedMemory();
+                            iteration.executionTreeNodeCount = execListener.getTreeNodeCount();
+                            iteration.isExecutionTreeReleased = execListener.isTreeReleased();
+                            iteration.pathStateCount = execListener.getPathStateCount();
+                            iteration.pathConditionCount = pcListener.getPcCount();
+                            iteration.arePathConditionsReleased = pcListener.isReleased();
+                        }
+                    }
 
                     hasSucceeded = true;
                 } catch (Throwable e) {
@@ -271,7 +337,8 @@ public class DifferencingRunner {
                         diffListener.getContext(),
                         diffListener.getV1Summary(),
                         diffListener.getV2Summary(),
-                        diffListener.getVariables()
+                        diffListener.getV1SummaryIndex(),
+                        diffListener.getV2SummaryIndex()
                     );
 
                     if (!nextToRefine.isEmpty()) {
@@ -317,6 +384,20 @@ public class DifferencingRunner {
                 ex.printStackTrace(systemError);
                 ex.printStackTrace(errorStream);
             }
+        } finally {
+            try {
+                WriteQueue.flush();
+            } finally {
+                Repository.close();
+                if (solverCache != null) {
+                    solverCache.close();
+                }
+
+                System.setOut(systemOutput);
+                System.setErr(systemError);
+                outputStream.close();
+                errorStream.close();
+            }
         }
     }
 
@@ -327,6 +408,10 @@ public class DifferencingRunner {
         boolean isError,
         String errors
     ) {
+        // Make sure all partitions of the iteration have been written
+        // before the iteration itself is finalized.
+        WriteQueue.flush();
+
         Classification result = new IterationClassifier(
             false, false, isError, hasTimedOut,
             diffListener.getPartitions()
@@ -345,6 +430,13 @@ public class DifferencingRunner {
         );
 
         finishedIteration.id = iteration.id;
+        finishedIteration.memoryBudget = iteration.memoryBudget;
+        finishedIteration.peakUsedMemory = iteration.peakUsedMemory;
+        finishedIteration.executionTreeNodeCount = iteration.executionTreeNodeCount;
+        finishedIteration.isExecutionTreeReleased = iteration.isExecutionTreeReleased;
+        finishedIteration.pathStateCount = iteration.pathStateCount;
+        finishedIteration.pathConditionCount = iteration.pathConditionCount;
+        finishedIteration.arePathConditionsReleased = iteration.arePathConditionsReleased;
         IterationRepository.insertOrUpdate(finishedIteration);
 
         return finishedIteration;
@@ -408,6 +500,11 @@ public class DifferencingRunner {
         root.put("parameters", parameters);
         root.put("timeout", timeout * 1000);
         root.put("depthLimit", depthLimit);
+        root.put("isStateMatching", IS_STATE_MATCHING);
+        root.put("isPersistentHeap", IS_PERSISTENT_HEAP);
+        if (InMemoryCompiler.IS_ENABLED) {
+            root.put("memoryClasspath", InMemoryCompiler.CONTAINER_NAME);
+        }
 
         /* Get the template (uses cache internally) */
         Template template = this.freeMarkerConfiguration.getTemplate("DifferencingConfiguration.ftl");
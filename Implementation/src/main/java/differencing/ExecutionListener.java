@@ -7,6 +7,8 @@ import differencing.models.PartitionInstruction;
 import differencing.repositories.InstructionRepository;
 import differencing.repositories.PartitionInstructionRepository;
 import differencing.repositories.PartitionRepository;
+import differencing.repositories.Repository;
+import differencing.repositories.WriteQueue;
 import gov.nasa.jpf.PropertyListenerAdapter;
 import gov.nasa.jpf.jvm.bytecode.JVMReturnInstruction;
 import gov.nasa.jpf.search.Search;
@@ -14,6 +16,7 @@ import gov.nasa.jpf.symbc.numeric.PCChoiceGenerator;
 import gov.nasa.jpf.symbc.numeric.PathCondition;
 import gov.nasa.jpf.util.MethodSpec;
 import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.InstructionSubscriber;
 import gov.nasa.jpf.vm.MethodInfo;
 import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.VM;
@@ -21,7 +24,7 @@ import gov.nasa.jpf.vm.VM;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class ExecutionListener extends PropertyListenerAdapter {
+public class ExecutionListener extends PropertyListenerAdapter implements InstructionSubscriber {
     private final DifferencingParameters parameters;
 
     private final MethodSpec methodToCoverSpec;
@@ -30,11 +33,17 @@ public class ExecutionListener extends PropertyListenerAdapter {
     // Note: all code that involves ExecutionNodes is only there to make
     // debugging easier by providing a tree view of all instructions executed
     // during the symbolic execution. Look at `roots` in `searchFinished` to
-    // see the full execution tree.
+    // see the full execution tree. If the MemoryBudget is exceeded, the
+    // tree is released and only the nodes of the current path are kept.
 
     private final List<ExecutionNode> roots = new ArrayList<>();
     private final Map<Integer, ExecutionNode> nodeMap = new HashMap<>();
     private final Map<Integer, Integer> indexMap = new HashMap<>();
+    // The states in nodeMap / indexMap, most recent first.
+    private final Deque<Integer> pathStateIds = new ArrayDeque<>();
+
+    private boolean isTreeReleased = false;
+    private int treeNodeCount = 0;
 
     private final Iteration iteration;
     private final Set<Partition> partitions = new HashSet<>();
@@ -60,6 +69,18 @@ public class ExecutionListener extends PropertyListenerAdapter {
         );
     }
 
+    /**
+     * Sets the number of the first partition, e.g., so that the partitions
+     * of different ParallelDifferencing workers don't have the same numbers.
+     */
+    public void setFirstPartitionNr(int partitionNr) {
+        this.partitionNr = partitionNr;
+        this.currentPartition = new Partition(
+            this.iteration.id,
+            this.partitionNr
+        );
+    }
+
     @Override
     public void methodEntered(VM vm, ThreadInfo currentThread, MethodInfo enteredMethod) {
         if (this.methodToCoverSpec.matches(enteredMethod)) {
@@ -80,12 +101,29 @@ public class ExecutionListener extends PropertyListenerAdapter {
             if (vm.getSearch().isNewState()) {
                 this.nodeMap.put(vm.getStateId(), this.prevNode);
                 this.indexMap.put(vm.getStateId(), this.prevIndex);
+                this.pathStateIds.push(vm.getStateId());
             }
         }
     }
 
+    @Override
+    public void stateAdvanced(Search search) {
+        if (!this.isTreeReleased && MemoryBudget.isExceeded()) {
+            this.releaseExecutionTree();
+        }
+    }
+
     @Override
     public void stateBacktracked(Search search) {
+        // New states get increasing IDs, so all states with a higher ID than
+        // the state that the search backtracked to are in its (finished)
+        // subtree, i.e., their nodes aren't needed anymore.
+        while (!this.pathStateIds.isEmpty() && this.pathStateIds.peek() > search.getStateId()) {
+            int stateId = this.pathStateIds.pop();
+            this.nodeMap.remove(stateId);
+            this.indexMap.remove(stateId);
+        }
+
         this.prevNode = this.nodeMap.get(search.getStateId());
         this.prevIndex = this.indexMap.getOrDefault(search.getStateId(), -1);
         this.isInMethodToCover = this.prevNode != null;
@@ -107,6 +145,20 @@ public class ExecutionListener extends PropertyListenerAdapter {
         this.startNextPartition();
     }
 
+    @Override
+    public boolean isSubscribedToExecuteInstruction(gov.nasa.jpf.vm.Instruction instruction) {
+        return false;
+    }
+
+    @Override
+    public boolean isSubscribedToInstructionExecuted(gov.nasa.jpf.vm.Instruction instruction) {
+        MethodInfo mi = instruction.getMethodInfo();
+        if (instruction instanceof JVMReturnInstruction && this.runSpec.matches(mi)) {
+            return true;
+        }
+        return mi.getClassInfo() == null || this.methodToCoverSpec.matchesClass(mi.getClassInfo());
+    }
+
     @Override
     public void instructionExecuted(VM vm, ThreadInfo currentThread, gov.nasa.jpf.vm.Instruction nextInstruction, gov.nasa.jpf.vm.Instruction executedInstruction) {
         MethodInfo mi = executedInstruction.getMethodInfo();
@@ -115,7 +167,7 @@ public class ExecutionListener extends PropertyListenerAdapter {
         }
 
         if (this.isInMethodToCover && !vm.getSystemState().isIgnored() && !currentThread.isFirstStepInsn()) {
-            if (this.methodToCoverSpec.matchesClass(executedInstruction.getMethodInfo().getClassInfo().getName())) {
+            if (this.methodToCoverSpec.matchesClass(mi.getClassInfo())) {
                 assert vm.getChoiceGenerator() instanceof PCChoiceGenerator;
                 PCChoiceGenerator cg = vm.getLastChoiceGeneratorOfType(PCChoiceGenerator.class);
 
@@ -134,7 +186,6 @@ public class ExecutionListener extends PropertyListenerAdapter {
                 // -------------------------------------------------------------
 
                 ExecutionNode node = new ExecutionNode(vm.getStateId(), cg.getNextChoice(), this.prevIndex + 1, instruction, this.prevNode);
-                node.pathCondition = PathCondition.getPC(vm);
 
                 ExecutionNode n = node;
                 while (n != null && !n.partitionNrs.contains(this.partitionNr)) {
@@ -142,10 +193,14 @@ public class ExecutionListener extends PropertyListenerAdapter {
                     n = n.prev;
                 }
 
-                if (this.prevNode == null) {
-                    this.roots.add(node);
-                } else {
-                    this.prevNode.addNext(node);
+                if (!this.isTreeReleased) {
+                    node.pathCondition = PathCondition.getPC(vm);
+                    if (this.prevNode == null) {
+                        this.roots.add(node);
+                    } else {
+                        this.prevNode.addNext(node);
+                    }
+                    this.treeNodeCount++;
                 }
 
                 this.prevNode = node;
@@ -154,40 +209,40 @@ public class ExecutionListener extends PropertyListenerAdapter {
         }
     }
 
-    private void startNextPartition() {
-        this.currentPartition.id = PartitionRepository.getId(this.currentPartition);
-        PartitionRepository.insertOrUpdate(this.currentPartition);
+    /** @return The number of nodes in the execution tree (0 if it has been released). */
+    public int getTreeNodeCount() {
+        return this.treeNodeCount;
+    }
 
-        ExecutionNode node = this.prevNode;
+    /** @return The number of states on the current path for which a node is kept. */
+    public int getPathStateCount() {
+        return this.nodeMap.size();
+    }
 
-        Set<Instruction> newInstructions = new HashSet<>();
-        while (node != null) {
-            if (node.instruction.id == null) {
-                newInstructions.add(node.instruction);
-            }
-            node = node.prev;
-        }
+    public boolean isTreeReleased() {
+        return this.isTreeReleased;
+    }
 
-        InstructionRepository.insertOrUpdate(newInstructions);
-
-        node = this.prevNode;
-
-        Set<PartitionInstruction> newPartitionInstructions = new HashSet<>();
-        while (node != null) {
-            newPartitionInstructions.add(new PartitionInstruction(
-                this.currentPartition.id,
-                node.instruction.id,
-                node.version,
-                node.instruction.method,
-                node.instruction.instructionIndex,
-                node.executionIndex,
-                node.stateId,
-                node.choiceId
-            ));
-            node = node.prev;
+    /**
+     * Unlinks the execution tree, so that the nodes of finished partitions
+     * can be garbage collected once they have been written. The nodes of
+     * the current path (which include all nodes in nodeMap) stay reachable
+     * from the current node.
+     */
+    private void releaseExecutionTree() {
+        for (ExecutionNode n = this.prevNode; n != null; n = n.prev) {
+            n.next = new ArrayList<>();
+            n.pathCondition = null;
         }
+        this.roots.clear();
+        this.treeNodeCount = 0;
+        this.isTreeReleased = true;
+    }
 
-        PartitionInstructionRepository.insertOrUpdate(newPartitionInstructions);
+    private void startNextPartition() {
+        Partition partition = this.currentPartition;
+        ExecutionNode lastNode = this.prevNode;
+        WriteQueue.submit(() -> writePartition(partition, lastNode));
 
         this.partitions.add(this.currentPartition);
         this.partitionNr++;
@@ -198,6 +253,45 @@ public class ExecutionListener extends PropertyListenerAdapter {
         );
     }
 
+    private static void writePartition(Partition partition, ExecutionNode lastNode) {
+        // Write the partition and all of its instructions in one transaction.
+        Repository.inTransaction(() -> {
+            partition.id = PartitionRepository.getId(partition);
+            PartitionRepository.insertOrUpdate(partition);
+
+            ExecutionNode node = lastNode;
+
+            Set<Instruction> newInstructions = new HashSet<>();
+            while (node != null) {
+                if (node.instruction.id == null) {
+                    newInstructions.add(node.instruction);
+                }
+                node = node.prev;
+            }
+
+            InstructionRepository.insertOrUpdate(newInstructions);
+
+            node = lastNode;
+
+            Set<PartitionInstruction> newPartitionInstructions = new HashSet<>();
+            while (node != null) {
+                newPartitionInstructions.add(new PartitionInstruction(
+                    partition.id,
+                    node.instruction.id,
+                    node.version,
+                    node.instruction.method,
+                    node.instruction.instructionIndex,
+                    node.executionIndex,
+                    node.stateId,
+                    node.choiceId
+                ));
+                node = node.prev;
+            }
+
+            PartitionInstructionRepository.insertOrUpdate(newPartitionInstructions);
+        });
+    }
+
     private static class ExecutionNode {
         public final int stateId;
         public final int choiceId;
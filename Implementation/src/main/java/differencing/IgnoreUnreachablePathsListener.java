@@ -4,20 +4,42 @@ import com.microsoft.z3.Status;
 import differencing.domain.Model;
 import differencing.transformer.SpfToModelTransformer;
 import gov.nasa.jpf.PropertyListenerAdapter;
+import gov.nasa.jpf.search.Search;
 import gov.nasa.jpf.symbc.numeric.Constraint;
 import gov.nasa.jpf.symbc.numeric.PathCondition;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.VM;
 
+import java.util.*;
+
 public class IgnoreUnreachablePathsListener extends PropertyListenerAdapter {
+    // Mirrors the PC of the current path on an incremental solver stack,
+    // with one scope per constraint: When the PC grows, only the new
+    // constraints are transformed and pushed, and when the search
+    // backtracks, the scopes of the constraints that are no longer on the
+    // path are popped. Enable with:
+    // java -Ddifferencing.incremental-reachability=true -jar ...
+    private static final boolean IS_INCREMENTAL = Boolean.getBoolean("differencing.incremental-reachability");
+
     private final SpfToModelTransformer spfToModel = new SpfToModelTransformer();
     private final SatisfiabilityChecker satChecker;
 
     private PathCondition previousPathCondition = null;
 
+    // Incremental mode: The constraints that are asserted on the solver
+    // (bottom to top), their scopes, and the result of the check of the
+    // PC that ends with them (or null if that PC wasn't checked).
+    private final List<Constraint> assertedConstraints = new ArrayList<>();
+    private final Map<Constraint, Integer> assertedScopes = new IdentityHashMap<>();
+    private final List<Status> assertedStatuses = new ArrayList<>();
+
     public IgnoreUnreachablePathsListener(int solverTimeout) {
-        this.satChecker = new SatisfiabilityChecker(solverTimeout);
+        this(solverTimeout, null);
+    }
+
+    public IgnoreUnreachablePathsListener(int solverTimeout, SolverResultCache solverCache) {
+        this.satChecker = new SatisfiabilityChecker(solverTimeout, IS_INCREMENTAL, solverCache);
     }
 
     @Override
@@ -28,6 +50,13 @@ public class IgnoreUnreachablePathsListener extends PropertyListenerAdapter {
 
         PathCondition currentPathCondition = PathCondition.getPC(vm);
 
+        if (IS_INCREMENTAL) {
+            if (this.checkIncrementally(currentPathCondition) == Status.UNSATISFIABLE) {
+                currentThread.getVM().getSystemState().setIgnored(true);
+            }
+            return;
+        }
+
         if (this.previousPathCondition == null) {
             this.previousPathCondition = currentPathCondition;
         }
@@ -44,4 +73,68 @@ public class IgnoreUnreachablePathsListener extends PropertyListenerAdapter {
             this.previousPathCondition = currentPathCondition;
         }
     }
+
+    @Override
+    public void stateBacktracked(Search search) {
+        if (IS_INCREMENTAL) {
+            this.popUnassertedConstraints(PathCondition.getPC(search.getVM()));
+        }
+    }
+
+    private Status checkIncrementally(PathCondition pathCondition) {
+        Constraint header = pathCondition == null ? null : pathCondition.header;
+        if (header == null) {
+            return Status.SATISFIABLE;
+        }
+
+        // Fast path: The PC didn't change since the last instruction.
+        int top = this.assertedConstraints.size() - 1;
+        if (top >= 0 && this.assertedConstraints.get(top) == header && this.assertedStatuses.get(top) != null) {
+            return this.assertedStatuses.get(top);
+        }
+
+        Deque<Constraint> newConstraints = this.popUnassertedConstraints(pathCondition);
+        for (Constraint constraint : newConstraints) {
+            this.satChecker.pushPcConjunct(this.spfToModel.transformConjunct(constraint));
+            this.assertedScopes.put(constraint, this.assertedConstraints.size());
+            this.assertedConstraints.add(constraint);
+            this.assertedStatuses.add(null);
+        }
+
+        top = this.assertedConstraints.size() - 1;
+        Status status = this.assertedStatuses.get(top);
+        if (status == null) {
+            status = this.satChecker.checkPcConjuncts().status;
+            this.assertedStatuses.set(top, status);
+        }
+        return status;
+    }
+
+    /**
+     * Pops the scopes of all asserted constraints that aren't part of the
+     * given PC (anymore), e.g., because the search backtracked.
+     * @return The constraints of the PC that aren't asserted, bottom first.
+     */
+    private Deque<Constraint> popUnassertedConstraints(PathCondition pathCondition) {
+        // SPF prepends new constraints to the PC and shares the
+        // remaining constraints with the PC of the parent state.
+        Deque<Constraint> newConstraints = new ArrayDeque<>();
+        Constraint constraint = pathCondition == null ? null : pathCondition.header;
+        while (constraint != null && !this.assertedScopes.containsKey(constraint)) {
+            newConstraints.push(constraint);
+            constraint = constraint.and;
+        }
+
+        int keep = constraint == null ? 0 : this.assertedScopes.get(constraint) + 1;
+        int size = this.assertedConstraints.size();
+        if (keep < size) {
+            this.satChecker.popPcConjuncts(size - keep);
+            for (int i = size - 1; i >= keep; i--) {
+                this.assertedScopes.remove(this.assertedConstraints.remove(i));
+                this.assertedStatuses.remove(i);
+            }
+        }
+
+        return newConstraints;
+    }
 }
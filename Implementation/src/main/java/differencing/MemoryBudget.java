@@ -0,0 +1,64 @@
+package differencing;
+
+/**
+ * Caps the heap that a differencing run may use for data that the
+ * listeners only retain for debugging, i.e., the execution tree of the
+ * ExecutionListener and the PCs of all states and partitions of the
+ * PathConditionListener. The instructions and PCs of each partition are
+ * written to the DB and to the -JSON-PC.json files as soon as the
+ * partition is finished, so nothing is lost if these are released.
+ * <p>
+ * Once the used heap exceeds the budget, the listeners release these data
+ * and only keep what's needed to continue the current path, so that runs
+ * with long timeouts finish with results instead of running out of memory.
+ * <p>
+ * The PCs that SPF keeps in its PCChoiceGenerators are not released: the
+ * generators are only reachable from the current path (via the backtracker
+ * and the previous generators of the current one), so they hold at most a
+ * few PCs per branch of that path, which mostly share their constraints.
+ * Once a subtree is finished and backtracked, its generators are garbage
+ * (with state matching, the state set only stores fingerprints of states).
+ */
+public class MemoryBudget {
+    // The budget in MB. Enable with:
+    // java -Ddifferencing.memory-budget=4096 -jar ...
+    private static final long BUDGET = Long.getLong("differencing.memory-budget", 0) << 20;
+
+    private static long peakUsedMemory = 0;
+
+    public static boolean isEnabled() {
+        return BUDGET > 0;
+    }
+
+    /**
+     * Should be called once per transition, not per instruction.
+     * @return Whether the budget is enabled and the used heap exceeds it.
+     */
+    public static boolean isExceeded() {
+        if (!isEnabled()) {
+            return false;
+        }
+        long usedMemory = getUsedMemory();
+        peakUsedMemory = Math.max(peakUsedMemory, usedMemory);
+        return usedMemory > BUDGET;
+    }
+
+    public static long getBudget() {
+        return BUDGET;
+    }
+
+    /** @return The highest used heap observed by {@link #isExceeded()}. */
+    public static long getPeakUsedMemory() {
+        return peakUsedMemory;
+    }
+
+    /** Forgets the peak used heap, e.g., between iterations or the jobs of a BenchmarkDaemon. */
+    public static void reset() {
+        peakUsedMemory = 0;
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -6,6 +6,7 @@ import com.microsoft.z3.BoolExpr;
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
 import equiv.checking.SourceInstrumentation;
+import equiv.checking.SummaryIndex;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -43,6 +44,15 @@ public class PASDAInstrumentation implements SourceInstrumentation {
         }
     }
 
+    @Override
+    public String getNextToRefine(Context context, BoolExpr summaryOld, BoolExpr summaryNew, SummaryIndex indexOld, SummaryIndex indexNew) throws IOException {
+        if (this.isFirstIteration) {
+            return "non-empty";
+        } else {
+            return this.gradDiffInstrumentation.getNextToRefine(context, summaryOld, summaryNew, indexOld, indexNew);
+        }
+    }
+
     @Override
     public void expandFunction(String statement, ArrayList<Integer> changes) {
         if (this.isFirstIteration) {
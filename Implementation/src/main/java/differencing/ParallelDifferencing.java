@@ -0,0 +1,327 @@
+package differencing;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import differencing.models.Iteration;
+import differencing.models.Partition;
+import differencing.repositories.PartitionRepository;
+import differencing.repositories.Repository;
+import differencing.repositories.WriteQueue;
+import equiv.checking.InMemoryCompiler;
+import equiv.checking.ProjectPaths;
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.symbc.SymbolicListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Explores the differencing driver of an iteration in parallel.
+ * <p>
+ * First, the paths of the driver are cut after their first few branches to
+ * get a frontier of path prefixes (see {@link PathPrefixListener}). Then, the
+ * subtree below each prefix is explored by a worker with the same listeners
+ * as in a sequential run. JPF keeps most of its state in static fields, so
+ * each worker runs in its own child JVM. The workers write their partitions
+ * to the DB (with numbers that don't overlap with the ones of the other
+ * workers) and their summaries to a result file.
+ * <p>
+ * The results of the workers are merged in the order of the prefixes, i.e.,
+ * in the order of the depth-first search, so the partitions are renumbered
+ * to the same numbers as in a sequential run.
+ */
+public class ParallelDifferencing {
+    // Until they are renumbered, the partition numbers of
+    // the i-th worker start at (i + 1) * PARTITION_NR_STRIDE.
+    private static final int PARTITION_NR_STRIDE = 1000000;
+
+    private final DifferencingParameters parameters;
+    private final Iteration iteration;
+    private final int workerCount;
+    private final int solverTimeout;
+    // The time (in ms since the epoch) at which the iteration times out.
+    private final long deadline;
+
+    public ParallelDifferencing(
+        DifferencingParameters parameters,
+        Iteration iteration,
+        int workerCount,
+        int solverTimeout,
+        long deadline
+    ) {
+        this.parameters = parameters;
+        this.iteration = iteration;
+        this.workerCount = workerCount;
+        this.solverTimeout = solverTimeout;
+        this.deadline = deadline;
+    }
+
+    public void run(File configFile, DifferencingListener diffListener) throws Exception {
+        // Aim for a few prefixes per worker, so the workers stay busy
+        // even if the subtrees below the prefixes differ in size.
+        int frontierDepth = 32 - Integer.numberOfLeadingZeros(4 * this.workerCount - 1);
+        List<int[]> prefixes = this.collectPrefixes(configFile, frontierDepth);
+
+        if (InMemoryCompiler.IS_ENABLED) {
+            // The child JVMs can only load the programs from disk.
+            InMemoryCompiler.writeClassFiles(ProjectPaths.classpath);
+        }
+
+        ChildJvms childJvms = new ChildJvms();
+        ExecutorService executor = Executors.newFixedThreadPool(this.workerCount);
+        try {
+            List<Future<WorkerResult>> futures = new ArrayList<>();
+            for (int i = 0; i < prefixes.size(); i++) {
+                int worker = i;
+                int[] prefix = prefixes.get(i);
+                futures.add(executor.submit(() -> this.runWorker(worker, prefix, configFile, childJvms)));
+            }
+
+            int partitionNr = 1;
+            long peakUsedMemory = 0;
+            int executionTreeNodeCount = 0;
+            boolean isExecutionTreeReleased = false;
+            int pathStateCount = 0;
+            int pathConditionCount = 0;
+            boolean arePathConditionsReleased = false;
+
+            for (Future<WorkerResult> future : futures) {
+                WorkerResult result = future.get();
+
+                List<Partition> partitions = result.partitions.stream()
+                    .sorted(Comparator.comparingInt(p -> p.partition))
+                    .collect(Collectors.toList());
+
+                int firstPartitionNr = partitionNr;
+                Repository.inTransaction(() -> {
+                    int nr = firstPartitionNr;
+                    for (Partition partition : partitions) {
+                        PartitionRepository.updatePartitionNr(this.iteration.id, partition.partition, nr++);
+                    }
+                });
+
+                // Only rename the files once the new numbers are committed.
+                for (Partition partition : partitions) {
+                    this.renamePathConditionFile(partition.partition, partitionNr);
+                    partition.partition = partitionNr++;
+                }
+
+                diffListener.addWorkerResults(partitions, result.v1Summary, result.v2Summary);
+
+                // Each worker has its own heap, so the peak is the highest
+                // peak of any worker. The counts include the nodes and
+                // states of the prefix once per worker.
+                peakUsedMemory = Math.max(peakUsedMemory, result.peakUsedMemory);
+                executionTreeNodeCount += result.executionTreeNodeCount;
+                isExecutionTreeReleased |= result.isExecutionTreeReleased;
+                pathStateCount += result.pathStateCount;
+                pathConditionCount += result.pathConditionCount;
+                arePathConditionsReleased |= result.arePathConditionsReleased;
+            }
+
+            if (MemoryBudget.isEnabled()) {
+                this.iteration.memoryBudget = MemoryBudget.getBudget();
+                this.iteration.peakUsedMemory = peakUsedMemory;
+                this.iteration.executionTreeNodeCount = executionTreeNodeCount;
+                this.iteration.isExecutionTreeReleased = isExecutionTreeReleased;
+                this.iteration.pathStateCount = pathStateCount;
+                this.iteration.pathConditionCount = pathConditionCount;
+                this.iteration.arePathConditionsReleased = arePathConditionsReleased;
+            }
+        } finally {
+            executor.shutdownNow();
+            childJvms.close();
+        }
+    }
+
+    private List<int[]> collectPrefixes(File configFile, int frontierDepth) {
+        Config config = JPF.createConfig(new String[]{configFile.getAbsolutePath()});
+        JPF jpf = new JPF(config);
+
+        PathPrefixListener prefixListener = new PathPrefixListener(frontierDepth);
+        jpf.addListener(new IgnoreUnreachablePathsListener(this.solverTimeout));
+        jpf.addListener(prefixListener);
+        jpf.run();
+
+        return prefixListener.getFrontier();
+    }
+
+    private WorkerResult runWorker(int worker, int[] prefix, File configFile, ChildJvms childJvms) throws Exception {
+        String workerName = this.parameters.getTargetClassName() + "-W" + (worker + 1);
+        Path resultFile = Paths.get(this.parameters.getTargetDirectory(), workerName + "-Result.json").toAbsolutePath();
+
+        List<String> command = ChildJvms.command(
+            ParallelDifferencing.class,
+            new File(this.parameters.getParameterFile()).getAbsolutePath(),
+            Integer.toString(this.iteration.runId),
+            Integer.toString(this.iteration.iteration),
+            Integer.toString(this.iteration.id),
+            Integer.toString(this.solverTimeout),
+            Long.toString(this.deadline),
+            configFile.getAbsolutePath(),
+            Integer.toString((worker + 1) * PARTITION_NR_STRIDE),
+            Arrays.stream(prefix).mapToObj(Integer::toString).collect(Collectors.joining(",")),
+            resultFile.toString()
+        );
+
+        File errorFile = Paths.get(this.parameters.getTargetDirectory(), workerName + "-Error.txt").toFile();
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectOutput(Paths.get(this.parameters.getTargetDirectory(), workerName + "-Output.txt").toFile());
+        builder.redirectError(errorFile);
+
+        Process process = childJvms.start(builder);
+
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new RuntimeException(
+                "Worker " + (worker + 1) + " of '" + this.parameters.getTargetClassName() + "' " +
+                "failed with exit code " + exitCode + " (see " + errorFile + ")."
+            );
+        }
+
+        try {
+            return createGson().fromJson(new String(Files.readAllBytes(resultFile)), WorkerResult.class);
+        } finally {
+            Files.delete(resultFile);
+        }
+    }
+
+    private void renamePathConditionFile(int oldPartitionNr, int newPartitionNr) throws IOException {
+        // See PathConditionListener.writePathCondition.
+        String prefix = this.parameters.getTargetClassName() + "-P";
+        Path source = Paths.get(this.parameters.getTargetDirectory(), prefix + oldPartitionNr + "-JSON-PC.json");
+        Path target = Paths.get(this.parameters.getTargetDirectory(), prefix + newPartitionNr + "-JSON-PC.json");
+        if (source.toFile().exists()) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Gson createGson() {
+        GsonBuilder builder = new GsonBuilder();
+        builder.serializeNulls();
+        return builder.create();
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Arguments: [parameter_file] [run_id] [iteration] [iteration_id] [solver_timeout] [deadline]
+        //            [config] [first_partition_nr] [prefix] [result_file]
+        // Used by run to explore the subtree below a prefix in a child JVM.
+        DifferencingParameters parameters = new DifferencingParameterFactory().load(new File(args[0]));
+        Iteration iteration = new Iteration(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        iteration.id = Integer.parseInt(args[3]);
+        int solverTimeout = Integer.parseInt(args[4]);
+        long deadline = Long.parseLong(args[5]);
+        String configPath = args[6];
+        int firstPartitionNr = Integer.parseInt(args[7]);
+        int[] prefix = args[8].isEmpty()
+            ? new int[0]
+            : Arrays.stream(args[8].split(",")).mapToInt(Integer::parseInt).toArray();
+        Path resultFile = Paths.get(args[9]);
+
+        parameters.setIteration(iteration.iteration);
+
+        // Workers that start later (e.g., because all others were busy)
+        // only get the time that is left until the deadline.
+        int iterationTimeout = (int) Math.max(0, (deadline - System.currentTimeMillis()) / 1000);
+
+        StopWatches.start("iteration-" + iteration.iteration);
+        StopWatches.start("iteration-" + iteration.iteration + ":symbolic-execution");
+
+        SolverResultCache solverCache = DifferencingRunner.SOLVER_CACHE_PATH == null
+            ? null
+            : new SolverResultCache(DifferencingRunner.SOLVER_CACHE_PATH, DifferencingRunner.SOLVER_CACHE_SIZE);
+
+        IgnoreUnreachablePathsListener unreachableListener = new IgnoreUnreachablePathsListener(solverTimeout, solverCache);
+        ExecutionListener execListener = new ExecutionListener(iteration, parameters);
+        PathConditionListener pcListener = new PathConditionListener(iteration, parameters);
+        DifferencingListener diffListener = new DifferencingListener(iteration, parameters, solverTimeout, DifferencingRunner.IS_INCREMENTAL_SOLVING, solverCache);
+
+        TimeoutChecker timeoutChecker = new TimeoutChecker(diffListener, iteration, iterationTimeout);
+
+        execListener.setFirstPartitionNr(firstPartitionNr);
+        pcListener.setFirstPartitionNr(firstPartitionNr);
+        diffListener.setFirstPartitionNr(firstPartitionNr);
+
+        try {
+            Config config = JPF.createConfig(new String[]{configPath});
+            JPF jpf = new JPF(config);
+            jpf.addListener(new PathPrefixListener(prefix));
+            jpf.addListener(unreachableListener);
+            jpf.addListener(timeoutChecker);
+            jpf.addListener(new SymbolicListener(config, jpf));
+            jpf.addListener(execListener);
+            jpf.addListener(pcListener);
+            jpf.addListener(diffListener);
+
+            MemoryBudget.reset();
+            jpf.run();
+
+            // Makes sure that all partitions have their IDs.
+            WriteQueue.flush();
+
+            WorkerResult result = new WorkerResult(
+                new ArrayList<>(diffListener.getPartitions()),
+                diffListener.getV1SummarySmtLib(),
+                diffListener.getV2SummarySmtLib(),
+                MemoryBudget.getPeakUsedMemory(),
+                execListener.getTreeNodeCount(),
+                execListener.isTreeReleased(),
+                execListener.getPathStateCount(),
+                pcListener.getPcCount(),
+                pcListener.isReleased()
+            );
+            Files.write(resultFile, createGson().toJson(result).getBytes());
+        } finally {
+            diffListener.close();
+            if (solverCache != null) {
+                solverCache.close();
+            }
+            Repository.close();
+        }
+    }
+
+    private static class WorkerResult {
+        private final List<Partition> partitions;
+        private final String v1Summary;
+        private final String v2Summary;
+        private final long peakUsedMemory;
+        private final int executionTreeNodeCount;
+        private final boolean isExecutionTreeReleased;
+        private final int pathStateCount;
+        private final int pathConditionCount;
+        private final boolean arePathConditionsReleased;
+
+        private WorkerResult(
+            List<Partition> partitions,
+            String v1Summary,
+            String v2Summary,
+            long peakUsedMemory,
+            int executionTreeNodeCount,
+            boolean isExecutionTreeReleased,
+            int pathStateCount,
+            int pathConditionCount,
+            boolean arePathConditionsReleased
+        ) {
+            this.partitions = partitions;
+            this.v1Summary = v1Summary;
+            this.v2Summary = v2Summary;
+            this.peakUsedMemory = peakUsedMemory;
+            this.executionTreeNodeCount = executionTreeNodeCount;
+            this.isExecutionTreeReleased = isExecutionTreeReleased;
+            this.pathStateCount = pathStateCount;
+            this.pathConditionCount = pathConditionCount;
+            this.arePathConditionsReleased = arePathConditionsReleased;
+        }
+    }
+}
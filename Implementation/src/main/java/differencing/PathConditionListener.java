@@ -20,7 +20,7 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
-public class PathConditionListener extends PropertyListenerAdapter {
+public class PathConditionListener extends PropertyListenerAdapter implements InstructionSubscriber {
     private final DifferencingParameters parameters;
     private final MethodSpec runSpec;
 
@@ -30,6 +30,11 @@ public class PathConditionListener extends PropertyListenerAdapter {
     private final Map<Integer, Map<Integer, PathCondition>> statePcMap = new HashMap<>();
     private final Map<Integer, PathCondition> partitionPcMap = new HashMap<>();
 
+    // The PCs are only kept for debugging (the PC of each partition is
+    // written to its -JSON-PC.json file), so they are released once the
+    // MemoryBudget is exceeded.
+    private boolean isReleased = false;
+
     private int partitionId = 1;
 
     public PathConditionListener(Iteration iteration, DifferencingParameters parameters) {
@@ -40,6 +45,32 @@ public class PathConditionListener extends PropertyListenerAdapter {
         this.modelToJsonTransformer = new ModelToJsonTransformer();
     }
 
+    /**
+     * Sets the number of the first partition, e.g., so that the partitions
+     * of different ParallelDifferencing workers don't have the same numbers.
+     */
+    public void setFirstPartitionNr(int partitionNr) {
+        this.partitionId = partitionNr;
+    }
+
+    /** @return The number of PCs of states and partitions that are kept. */
+    public int getPcCount() {
+        return this.statePcMap.values().stream().mapToInt(Map::size).sum() + this.partitionPcMap.size();
+    }
+
+    public boolean isReleased() {
+        return this.isReleased;
+    }
+
+    @Override
+    public void stateAdvanced(Search search) {
+        if (!this.isReleased && MemoryBudget.isExceeded()) {
+            this.statePcMap.clear();
+            this.partitionPcMap.clear();
+            this.isReleased = true;
+        }
+    }
+
     @Override
     public void searchConstraintHit(Search search) {
         if (search.getVM().getCurrentThread().isFirstStepInsn()) {
@@ -56,6 +87,16 @@ public class PathConditionListener extends PropertyListenerAdapter {
         this.startNextPartition();
     }
 
+    @Override
+    public boolean isSubscribedToExecuteInstruction(Instruction instruction) {
+        return instruction instanceof JVMReturnInstruction && this.runSpec.matches(instruction.getMethodInfo());
+    }
+
+    @Override
+    public boolean isSubscribedToInstructionExecuted(Instruction instruction) {
+        return false;
+    }
+
     @Override
     public void executeInstruction(VM vm, ThreadInfo currentThread, Instruction instructionToExecute) {
         MethodInfo mi = instructionToExecute.getMethodInfo();
@@ -66,7 +107,7 @@ public class PathConditionListener extends PropertyListenerAdapter {
 
     @Override
     public void choiceGeneratorProcessed(VM vm, ChoiceGenerator<?> processedCG) {
-        if (!(vm.getChoiceGenerator() instanceof PCChoiceGenerator)) {
+        if (this.isReleased || !(vm.getChoiceGenerator() instanceof PCChoiceGenerator)) {
             return;
         }
 
@@ -91,7 +132,9 @@ public class PathConditionListener extends PropertyListenerAdapter {
     private void startNextPartition() {
         PathCondition pc = PathCondition.getPC(VM.getVM());
         this.writePathCondition(this.partitionId, pc);
-        this.partitionPcMap.put(this.partitionId, pc);
+        if (!this.isReleased) {
+            this.partitionPcMap.put(this.partitionId, pc);
+        }
         this.partitionId++;
     }
 
@@ -0,0 +1,92 @@
+package differencing;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.VM;
+
+import java.util.*;
+
+/**
+ * Identifies paths by their prefix, i.e., by the choices that were made at
+ * the first branches (choice generators with more than one choice) of the
+ * path, and can be used in one of two ways:
+ * <p>
+ * - With a frontier depth, the paths are cut after the given number of
+ * branches, and the prefixes of all cut (and shorter, finished) paths are
+ * collected in the order in which the depth-first search visits them.
+ * <p>
+ * - With a prefix, only the paths that start with the given prefix are
+ * explored, the same way as in JPF's ChoiceSelector, i.e., each of the
+ * first branches is restricted to the choice given by the prefix.
+ * <p>
+ * Together, the two modes allow to explore the subtrees below the frontier
+ * independently of each other (see ParallelDifferencing).
+ */
+public class PathPrefixListener extends ListenerAdapter {
+    private final int frontierDepth;
+    private final int[] prefix;
+
+    private final Set<List<Integer>> frontier = new LinkedHashSet<>();
+
+    public PathPrefixListener(int frontierDepth) {
+        this.frontierDepth = frontierDepth;
+        this.prefix = null;
+    }
+
+    public PathPrefixListener(int[] prefix) {
+        this.frontierDepth = -1;
+        this.prefix = prefix;
+    }
+
+    /** @return The prefixes of all paths, in the order of the depth-first search. */
+    public List<int[]> getFrontier() {
+        List<int[]> prefixes = new ArrayList<>();
+        for (List<Integer> path : this.frontier) {
+            prefixes.add(path.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return prefixes;
+    }
+
+    @Override
+    public void choiceGeneratorAdvanced(VM vm, ChoiceGenerator<?> currentCG) {
+        if (currentCG.getTotalNumberOfChoices() <= 1) {
+            return;
+        }
+
+        List<Integer> path = getPath(vm);
+
+        if (this.prefix != null) {
+            if (path.size() <= this.prefix.length) {
+                // Marks the choice generator as done,
+                // so the search never backtracks into it.
+                currentCG.select(this.prefix[path.size() - 1]);
+            }
+        } else if (path.size() == this.frontierDepth) {
+            this.frontier.add(path);
+            // Skip the choice (and, therefore, the whole subtree below it).
+            vm.getSystemState().setIgnored(true);
+        }
+    }
+
+    @Override
+    public void stateAdvanced(Search search) {
+        if (this.prefix != null || search.isIgnoredState()) {
+            return;
+        }
+        // Paths that finish before they reach the frontier.
+        if (search.isEndState() || search.isErrorState() || search.getDepth() >= search.getDepthLimit()) {
+            this.frontier.add(getPath(search.getVM()));
+        }
+    }
+
+    private static List<Integer> getPath(VM vm) {
+        List<Integer> path = new ArrayList<>();
+        for (ChoiceGenerator<?> cg : vm.getChoiceGenerators()) {
+            if (cg.getTotalNumberOfChoices() > 1) {
+                path.add(cg.getProcessedNumberOfChoices() - 1);
+            }
+        }
+        return path;
+    }
+}
@@ -3,18 +3,47 @@ package differencing;
 import com.microsoft.z3.*;
 import differencing.domain.Model;
 import differencing.transformer.ModelToZ3Transformer;
-import org.apache.commons.lang.exception.ExceptionUtils;
 
 import java.util.HashMap;
 import java.util.Map;
 
 public class SatisfiabilityChecker implements AutoCloseable {
     private final Context context;
+    // Shared by all checks, so the transformations of the (common prefixes
+    // of the) PCs of previous checks can be reused.
+    private final ModelToZ3Transformer modelToZ3;
+
+    // In incremental mode, all checks share a single long-lived solver.
+    // The current PC is asserted once in its own scope and the NEQ / EQ
+    // queries are answered in nested scopes on top of it, so repeated
+    // checks for the same PC neither re-assert the PC nor lose the
+    // lemmas that z3 has learned for it.
+    private final Solver solver;
+    private Model assertedPcModel = null;
+
+    private final int timeout;
+    private final SolverResultCache cache;
 
     public SatisfiabilityChecker(int timeout) {
+        this(timeout, false);
+    }
+
+    public SatisfiabilityChecker(int timeout, boolean isIncremental) {
+        this(timeout, isIncremental, null);
+    }
+
+    public SatisfiabilityChecker(int timeout, boolean isIncremental, SolverResultCache cache) {
         Map<String, String> settings = new HashMap<>();
         settings.put("timeout", Integer.toString(timeout));
         this.context = new Context(settings);
+        this.modelToZ3 = new ModelToZ3Transformer(this.context);
+        this.solver = isIncremental ? this.context.mkSolver() : null;
+        this.timeout = timeout;
+        this.cache = cache;
+    }
+
+    public boolean isIncremental() {
+        return this.solver != null;
     }
 
     @Override
@@ -23,44 +52,152 @@ public class SatisfiabilityChecker implements AutoCloseable {
     }
 
     public ReachabilityCheckResult checkPc(Model pcModel) {
-        ModelToZ3Transformer modelToZ3 = new ModelToZ3Transformer(this.context);
-        Expr<BoolSort> pcExpr = (Expr<BoolSort>) modelToZ3.transform(pcModel);
+        if (this.cache == null) {
+            return this.solvePc(pcModel);
+        }
+
+        SolverResultCache.Query query = this.cache.query("pc", this.isIncremental(), pcModel);
+        ReachabilityCheckResult result = this.cache.getReachabilityResult(query, this.timeout);
+        if (result == null) {
+            result = this.solvePc(pcModel);
+            this.cache.putReachabilityResult(query, this.timeout, result);
+        }
+        return result;
+    }
+
+    public EquivalenceCheckResult checkNeq(Model pcModel, Model v1Model, Model v2Model) {
+        if (this.cache == null) {
+            return this.solveNeq(pcModel, v1Model, v2Model);
+        }
+
+        SolverResultCache.Query query = this.cache.query("neq", this.isIncremental(), pcModel, v1Model, v2Model);
+        EquivalenceCheckResult result = this.cache.getEquivalenceResult(query, this.timeout);
+        if (result == null) {
+            result = this.solveNeq(pcModel, v1Model, v2Model);
+            this.cache.putEquivalenceResult(query, this.timeout, result);
+        }
+        return result;
+    }
+
+    public EquivalenceCheckResult checkEq(Model pcModel, Model v1Model, Model v2Model) {
+        if (this.cache == null) {
+            return this.solveEq(pcModel, v1Model, v2Model);
+        }
+
+        SolverResultCache.Query query = this.cache.query("eq", this.isIncremental(), pcModel, v1Model, v2Model);
+        EquivalenceCheckResult result = this.cache.getEquivalenceResult(query, this.timeout);
+        if (result == null) {
+            result = this.solveEq(pcModel, v1Model, v2Model);
+            this.cache.putEquivalenceResult(query, this.timeout, result);
+        }
+        return result;
+    }
+
+    /**
+     * Asserts a conjunct of the PC in a new scope of the incremental solver,
+     * so the PC can be built up (and torn down again with popPcConjuncts)
+     * one conjunct at a time, e.g., along the path of the search. This must
+     * not be mixed with the other checks, which assert the whole PC at once.
+     */
+    public void pushPcConjunct(Model conjunctModel) {
+        Expr<BoolSort> conjunctExpr = (Expr<BoolSort>) this.modelToZ3.transform(conjunctModel);
+
+        this.solver.push();
+        this.solver.add(conjunctExpr);
+    }
+
+    public void popPcConjuncts(int count) {
+        if (count > 0) {
+            this.solver.pop(count);
+        }
+    }
+
+    /** @return The result of the reachability check of the conjuncts that are currently asserted. */
+    public ReachabilityCheckResult checkPcConjuncts() {
+        return this.createReachabilityResult(this.solver, this.solver.check());
+    }
+
+    private ReachabilityCheckResult solvePc(Model pcModel) {
+        if (this.isIncremental()) {
+            this.assertPc(pcModel);
+            return this.createReachabilityResult(this.solver, this.solver.check());
+        }
+
+        Expr<BoolSort> pcExpr = (Expr<BoolSort>) this.modelToZ3.transform(pcModel);
 
         Solver solver = this.context.mkSolver();
         solver.add(pcExpr);
-        solver = this.removeFuncDeclsForBuiltIns(solver);
 
         return this.createReachabilityResult(solver, solver.check());
     }
 
-    public EquivalenceCheckResult checkNeq(Model pcModel, Model v1Model, Model v2Model) {
-        ModelToZ3Transformer modelToZ3 = new ModelToZ3Transformer(this.context);
-        Expr<BoolSort> pcExpr = (Expr<BoolSort>) modelToZ3.transform(pcModel);
-        Expr<?> v1Expr = modelToZ3.transform(v1Model);
-        Expr<?> v2Expr = modelToZ3.transform(v2Model);
+    private EquivalenceCheckResult solveNeq(Model pcModel, Model v1Model, Model v2Model) {
+        if (this.isIncremental()) {
+            Expr<?> v1Expr = this.modelToZ3.transform(v1Model);
+            Expr<?> v2Expr = this.modelToZ3.transform(v2Model);
+            BoolExpr neqExpr = this.context.mkNot(this.context.mkEq(v1Expr, v2Expr));
+            return this.checkIncrementally(pcModel, neqExpr, v1Expr, v2Expr);
+        }
+
+        Expr<BoolSort> pcExpr = (Expr<BoolSort>) this.modelToZ3.transform(pcModel);
+        Expr<?> v1Expr = this.modelToZ3.transform(v1Model);
+        Expr<?> v2Expr = this.modelToZ3.transform(v2Model);
 
         Solver solver = this.context.mkSolver();
         solver.add(pcExpr);
         solver.add(this.context.mkNot(this.context.mkEq(v1Expr, v2Expr)));
-        solver = this.removeFuncDeclsForBuiltIns(solver);
 
         return this.createEqualityResult(solver, solver.check(), v1Expr, v2Expr);
     }
 
-    public EquivalenceCheckResult checkEq(Model pcModel, Model v1Model, Model v2Model) {
-        ModelToZ3Transformer modelToZ3 = new ModelToZ3Transformer(this.context);
-        Expr<BoolSort> pcExpr = (Expr<BoolSort>) modelToZ3.transform(pcModel);
-        Expr<?> v1Expr = modelToZ3.transform(v1Model);
-        Expr<?> v2Expr = modelToZ3.transform(v2Model);
+    private EquivalenceCheckResult solveEq(Model pcModel, Model v1Model, Model v2Model) {
+        if (this.isIncremental()) {
+            Expr<?> v1Expr = this.modelToZ3.transform(v1Model);
+            Expr<?> v2Expr = this.modelToZ3.transform(v2Model);
+            BoolExpr eqExpr = this.context.mkEq(v1Expr, v2Expr);
+            return this.checkIncrementally(pcModel, eqExpr, v1Expr, v2Expr);
+        }
+
+        Expr<BoolSort> pcExpr = (Expr<BoolSort>) this.modelToZ3.transform(pcModel);
+        Expr<?> v1Expr = this.modelToZ3.transform(v1Model);
+        Expr<?> v2Expr = this.modelToZ3.transform(v2Model);
 
         Solver solver = this.context.mkSolver();
         solver.add(pcExpr);
         solver.add(this.context.mkEq(v1Expr, v2Expr));
-        solver = this.removeFuncDeclsForBuiltIns(solver);
 
         return this.createEqualityResult(solver, solver.check(), v1Expr, v2Expr);
     }
 
+    private EquivalenceCheckResult checkIncrementally(Model pcModel, BoolExpr query, Expr<?> v1Expr, Expr<?> v2Expr) {
+        this.assertPc(pcModel);
+
+        this.solver.push();
+        try {
+            this.solver.add(query);
+            return this.createEqualityResult(this.solver, this.solver.check(), v1Expr, v2Expr);
+        } finally {
+            this.solver.pop();
+        }
+    }
+
+    private void assertPc(Model pcModel) {
+        // The same model instance is passed to all checks of a partition,
+        // so an identity comparison is enough to detect a new PC.
+        if (this.solver.getNumScopes() > 0 && this.assertedPcModel == pcModel) {
+            return;
+        }
+
+        if (this.solver.getNumScopes() > 0) {
+            this.solver.pop();
+        }
+
+        Expr<BoolSort> pcExpr = (Expr<BoolSort>) this.modelToZ3.transform(pcModel);
+
+        this.solver.push();
+        this.solver.add(pcExpr);
+        this.assertedPcModel = pcModel;
+    }
 
     private ReachabilityCheckResult createReachabilityResult(Solver solver, Status status) {
         String statistics = solver.getStatistics().toString();
@@ -127,41 +264,4 @@ public class SatisfiabilityChecker implements AutoCloseable {
 
         throw new RuntimeException("Unknown solver status '" + status + "'.");
     }
-
-    private Solver removeFuncDeclsForBuiltIns(Solver solver) {
-        // @TODO: This function only exists to remove function declarations
-        //    that overwrite built-in z3 functions such as:
-        //    (declare-fun sin (Real) Real)
-        //    from the z3 queries.
-        //
-        // We do this because sin, cos, etc. already exist as built-in functions
-        // of z3, so if the query includes new declarations for those functions,
-        // it treats them as uninterpreted functions instead, thus ignoring the
-        // built-in definitions of the functions.
-        //
-        // Ideally, the function declarations shouldn't be added to the query
-        // in the first place. However, the Java API for z3 doesn't appear to
-        // offer a way to create function applications (e.g., sin(...)) without
-        // also providing declarations for the functions
-        //
-        // If there is a way to accomplish this (i.e., to create function
-        // applications without declarations), change ModelToZ3Transformer
-        // accordingly (i.e., replace this.context.mkApp in the 'case SIN'
-        // switch branch) and call solver.check() directly, rather than
-        // recreating the solver without the unwanted declarations here.
-        //
-        // @TODO: We should also remove the log declaration from the query.
-        //    However, ARDiff doesn't do this (i.e., it also defines the
-        //    log function as an uninterpreted function) so to keep our
-        //    results comparable with ARDiff, we're using the "wrong"
-        //    definition as well.
-
-        String query = solver.toString();
-        query = query.replaceAll("\\(declare-fun (?:sin|cos|tan|asin|acos|atan2|atan) \\(Real\\) Real\\)", "");
-
-        Solver s = this.context.mkSolver();
-        s.fromString(query);
-
-        return s;
-    }
 }
@@ -0,0 +1,318 @@
+package differencing;
+
+import com.microsoft.z3.Status;
+import differencing.domain.Model;
+import differencing.transformer.ModelToCanonicalStringTransformer;
+import org.sqlite.SQLiteConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent (SQLite-based) cache for the results of PC, NEQ, and EQ checks
+ * that can be shared across iterations, runs, and tools.
+ * <p>
+ * Queries are identified by a hash of their canonical, alpha-renamed form
+ * (see {@link ModelToCanonicalStringTransformer}), so the same query is
+ * found even if SPF named its variables differently. Models and results are
+ * stored with canonical names and are renamed back on retrieval. Results of
+ * incremental and non-incremental solvers are cached separately.
+ * <p>
+ * SAT / UNSAT results are reused regardless of the solver timeout. UNKNOWN
+ * results are only reused if the current timeout is not longer than the one
+ * that produced them, so runs with longer timeouts retry them.
+ * <p>
+ * If the cache exceeds its maximum size, the least recently used entries
+ * are evicted.
+ */
+public class SolverResultCache implements AutoCloseable {
+    private static final String CREATE_TABLE = "" +
+        "CREATE TABLE IF NOT EXISTS solver_result (" +
+        "key TEXT NOT NULL, " +
+        "status INTEGER NOT NULL, " +
+        "model TEXT, " +
+        "v1_result TEXT, " +
+        "v2_result TEXT, " +
+        "reason_unknown TEXT, " +
+        "statistics TEXT, " +
+        "timeout INTEGER NOT NULL, " +
+        "last_used INTEGER NOT NULL, " +
+        "PRIMARY KEY (key)" +
+        ")";
+
+    private static final String CREATE_INDEX = "" +
+        "CREATE INDEX IF NOT EXISTS solver_result__last_used ON solver_result (last_used)";
+
+    private static final String SELECT = "" +
+        "SELECT status, model, v1_result, v2_result, reason_unknown, statistics, timeout " +
+        "FROM solver_result " +
+        "WHERE key = ?";
+
+    private static final String TOUCH = "" +
+        "UPDATE solver_result SET last_used = ? WHERE key = ?";
+
+    private static final String INSERT_OR_UPDATE = "" +
+        "INSERT INTO solver_result(" +
+        "key, " +
+        "status, " +
+        "model, " +
+        "v1_result, " +
+        "v2_result, " +
+        "reason_unknown, " +
+        "statistics, " +
+        "timeout, " +
+        "last_used" +
+        ") " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT DO UPDATE SET " +
+        "status = excluded.status, " +
+        "model = excluded.model, " +
+        "v1_result = excluded.v1_result, " +
+        "v2_result = excluded.v2_result, " +
+        "reason_unknown = excluded.reason_unknown, " +
+        "statistics = excluded.statistics, " +
+        "timeout = excluded.timeout, " +
+        "last_used = excluded.last_used";
+
+    private static final String COUNT = "" +
+        "SELECT COUNT(*) FROM solver_result";
+
+    private static final String EVICT = "" +
+        "DELETE FROM solver_result WHERE key IN (" +
+        "SELECT key FROM solver_result ORDER BY last_used LIMIT ?" +
+        ")";
+
+    // Matches SMT-LIB symbols (quoted or not) in z3's model output.
+    private static final Pattern SYMBOL = Pattern.compile("\\|[^|]*\\||[^\\s()|]+");
+
+    private final Connection connection;
+    private final PreparedStatement selectStatement;
+    private final PreparedStatement touchStatement;
+    private final PreparedStatement insertStatement;
+    private final int maxSize;
+
+    private int size;
+
+    public SolverResultCache(String path, int maxSize) {
+        this.maxSize = maxSize;
+        try {
+            SQLiteConfig config = new SQLiteConfig();
+            config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+            config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+            config.setBusyTimeout(10000);
+            Properties properties = config.toProperties();
+
+            this.connection = DriverManager.getConnection("jdbc:sqlite:" + path, properties);
+
+            try (Statement statement = this.connection.createStatement()) {
+                statement.execute(CREATE_TABLE);
+                statement.execute(CREATE_INDEX);
+            }
+
+            this.selectStatement = this.connection.prepareStatement(SELECT);
+            this.touchStatement = this.connection.prepareStatement(TOUCH);
+            this.insertStatement = this.connection.prepareStatement(INSERT_OR_UPDATE);
+            this.size = this.count();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            this.selectStatement.close();
+            this.touchStatement.close();
+            this.insertStatement.close();
+            this.connection.close();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param kind The kind of check, e.g., "pc", "neq", or "eq".
+     * @param isIncremental Whether the check is done by an incremental
+     *                      solver, which can produce different models and
+     *                      UNKNOWN results than a fresh solver.
+     * @param models The models that make up the query.
+     */
+    public Query query(String kind, boolean isIncremental, Model... models) {
+        ModelToCanonicalStringTransformer canonicalizer = new ModelToCanonicalStringTransformer();
+        String mode = isIncremental ? "incremental" : "non-incremental";
+        String canonical = kind + ":" + mode + ":" + canonicalizer.transform(models);
+        return new Query(hash(canonical), canonicalizer.getRenaming());
+    }
+
+    public synchronized ReachabilityCheckResult getReachabilityResult(Query query, int timeout) {
+        EquivalenceCheckResult result = this.getEquivalenceResult(query, timeout);
+        if (result == null) {
+            return null;
+        }
+        return new ReachabilityCheckResult(result.status, result.model, result.reasonUnknown, result.statistics);
+    }
+
+    public synchronized void putReachabilityResult(Query query, int timeout, ReachabilityCheckResult result) {
+        this.put(query, timeout, result.status, result.model, null, null, result.reasonUnknown, result.statistics);
+    }
+
+    public synchronized EquivalenceCheckResult getEquivalenceResult(Query query, int timeout) {
+        try {
+            this.selectStatement.setString(1, query.key);
+
+            EquivalenceCheckResult result;
+            try (ResultSet rs = this.selectStatement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+
+                Status status = Status.fromInt(rs.getInt(1));
+                if (status == Status.UNKNOWN && timeout > rs.getInt(7)) {
+                    return null;
+                }
+
+                Map<String, String> renaming = query.getReverseRenaming();
+                result = new EquivalenceCheckResult(
+                    status,
+                    rename(rs.getString(2), renaming),
+                    rename(rs.getString(3), renaming),
+                    rename(rs.getString(4), renaming),
+                    rs.getString(5),
+                    rs.getString(6)
+                );
+            }
+
+            this.touchStatement.setLong(1, System.currentTimeMillis());
+            this.touchStatement.setString(2, query.key);
+            this.touchStatement.execute();
+
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void putEquivalenceResult(Query query, int timeout, EquivalenceCheckResult result) {
+        this.put(query, timeout, result.status, result.model, result.v1Result, result.v2Result, result.reasonUnknown, result.statistics);
+    }
+
+    private void put(
+        Query query,
+        int timeout,
+        Status status,
+        String model,
+        String v1Result,
+        String v2Result,
+        String reasonUnknown,
+        String statistics
+    ) {
+        try {
+            Map<String, String> renaming = query.renaming;
+            this.insertStatement.setString(1, query.key);
+            this.insertStatement.setInt(2, status.toInt());
+            this.insertStatement.setString(3, rename(model, renaming));
+            this.insertStatement.setString(4, rename(v1Result, renaming));
+            this.insertStatement.setString(5, rename(v2Result, renaming));
+            this.insertStatement.setString(6, reasonUnknown);
+            this.insertStatement.setString(7, statistics);
+            this.insertStatement.setInt(8, timeout);
+            this.insertStatement.setLong(9, System.currentTimeMillis());
+            this.insertStatement.execute();
+
+            this.size++;
+            if (this.size > this.maxSize) {
+                this.evict();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void evict() throws SQLException {
+        // Other processes might share the same cache file,
+        // so the local size is only an estimate until recounted.
+        this.size = this.count();
+        if (this.size <= this.maxSize) {
+            return;
+        }
+
+        // Evict a bit more than necessary so that
+        // not every single insert triggers an eviction.
+        int evictCount = this.size - this.maxSize + Math.max(1, this.maxSize / 10);
+        try (PreparedStatement ps = this.connection.prepareStatement(EVICT)) {
+            ps.setInt(1, evictCount);
+            ps.execute();
+        }
+        this.size = this.count();
+    }
+
+    private int count() throws SQLException {
+        try (Statement statement = this.connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(COUNT)) {
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static String rename(String text, Map<String, String> renaming) {
+        if (text == null || renaming.isEmpty()) {
+            return text;
+        }
+
+        Matcher matcher = SYMBOL.matcher(text);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String symbol = matcher.group();
+            boolean isQuoted = symbol.startsWith("|");
+            String name = isQuoted ? symbol.substring(1, symbol.length() - 1) : symbol;
+            String replacement = symbol;
+            if (renaming.containsKey(name)) {
+                // Keep quoted symbols quoted, as their names might
+                // contain characters that aren't allowed otherwise.
+                replacement = isQuoted ? "|" + renaming.get(name) + "|" : renaming.get(name);
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : bytes) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class Query {
+        private final String key;
+        private final Map<String, String> renaming;
+
+        private Query(String key, Map<String, String> renaming) {
+            this.key = key;
+            this.renaming = renaming;
+        }
+
+        private Map<String, String> getReverseRenaming() {
+            Map<String, String> reverse = new HashMap<>();
+            for (Map.Entry<String, String> entry : this.renaming.entrySet()) {
+                reverse.put(entry.getValue(), entry.getKey());
+            }
+            return reverse;
+        }
+    }
+}
@@ -57,6 +57,11 @@ public class StopWatches {
         return value;
     }
 
+    public static void reset() {
+        stopWatches.clear();
+        splits.clear();
+    }
+
     public static Map<String, Float> getTimes() {
         Map<String, Float> times = new HashMap<>();
         for (String name : stopWatches.keySet()) {
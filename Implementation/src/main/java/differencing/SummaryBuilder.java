@@ -0,0 +1,61 @@
+package differencing;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Context;
+import com.microsoft.z3.Expr;
+import equiv.checking.SummaryIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the summary of a program version as one flat n-ary or of its
+ * partition results (instead of a chain of binary ors that is as deep as
+ * the number of partitions). The or is only created when the summary is
+ * requested, and the summary is indexed as the partitions are added.
+ */
+public class SummaryBuilder {
+    private final Context context;
+    private final List<BoolExpr> partitions = new ArrayList<>();
+    private final SummaryIndex index = new SummaryIndex();
+
+    private BoolExpr summary = null;
+
+    public SummaryBuilder(Context context) {
+        this.context = context;
+    }
+
+    public void addPartition(BoolExpr partition) {
+        this.partitions.add(partition);
+        this.index.add(partition);
+        this.summary = null;
+    }
+
+    /** Adds all partitions of a summary, e.g., of a ParallelDifferencing worker. */
+    public void addSummary(BoolExpr summary) {
+        if (summary == null) {
+            return;
+        }
+        if (summary.isOr()) {
+            for (Expr<?> partition : summary.getArgs()) {
+                this.addPartition((BoolExpr) partition);
+            }
+        } else {
+            this.addPartition(summary);
+        }
+    }
+
+    /** @return The summary (or null if there are no partitions). */
+    public BoolExpr getSummary() {
+        if (this.summary == null && !this.partitions.isEmpty()) {
+            this.summary = this.partitions.size() == 1
+                ? this.partitions.get(0)
+                : this.context.mkOr(this.partitions.toArray(new BoolExpr[0]));
+        }
+        return this.summary;
+    }
+
+    public SummaryIndex getIndex() {
+        return this.index;
+    }
+}
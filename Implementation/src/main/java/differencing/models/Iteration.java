@@ -17,6 +17,16 @@ public class Iteration {
     public Float runtime;
     public String errors;
 
+    // Retention metrics of the symbolic execution, only recorded if a
+    // MemoryBudget is set (see ExecutionListener, PathConditionListener).
+    public Long memoryBudget;
+    public Long peakUsedMemory;
+    public Integer executionTreeNodeCount;
+    public Boolean isExecutionTreeReleased;
+    public Integer pathStateCount;
+    public Integer pathConditionCount;
+    public Boolean arePathConditionsReleased;
+
     public Iteration(int runId, int iteration) {
         this(runId, iteration, null, null, null, null, null, null, null);
     }
@@ -2,7 +2,6 @@ package differencing.repositories;
 
 import differencing.models.Benchmark;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
@@ -17,12 +16,15 @@ public class BenchmarkRepository extends Repository {
         "expected = excluded.expected";
 
     public static void insertOrUpdate(Benchmark benchmark) {
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(INSERT_OR_UPDATE)) {
-            ps.setObject(1, benchmark.benchmark);
-            ps.setObject(2, benchmark.expected);
-            ps.execute();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE);
+                ps.setObject(1, benchmark.benchmark);
+                ps.setObject(2, benchmark.expected);
+                ps.execute();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
         }
     }
 
@@ -35,11 +37,14 @@ public class BenchmarkRepository extends Repository {
     }
 
     public static void delete(String benchmark) {
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(DELETE)) {
-            ps.setObject(1, benchmark);
-            ps.execute();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(DELETE);
+                ps.setObject(1, benchmark);
+                ps.execute();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
         }
     }
 }
@@ -2,7 +2,6 @@ package differencing.repositories;
 
 import differencing.models.Iteration;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -19,9 +18,16 @@ public class IterationRepository extends Repository {
         "has_uif, " +
         "partition_count, " +
         "runtime, " +
-        "errors" +
+        "errors, " +
+        "memory_budget, " +
+        "peak_used_memory, " +
+        "execution_tree_node_count, " +
+        "is_execution_tree_released, " +
+        "path_state_count, " +
+        "path_condition_count, " +
+        "are_path_conditions_released" +
         ") " +
-        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
         "ON CONFLICT DO UPDATE SET " +
         "run_id = excluded.run_id, " +
         "iteration = excluded.iteration, " +
@@ -31,41 +37,54 @@ public class IterationRepository extends Repository {
         "has_uif = excluded.has_uif, " +
         "partition_count = excluded.partition_count, " +
         "runtime = excluded.runtime, " +
-        "errors = excluded.errors";
+        "errors = excluded.errors, " +
+        "memory_budget = excluded.memory_budget, " +
+        "peak_used_memory = excluded.peak_used_memory, " +
+        "execution_tree_node_count = excluded.execution_tree_node_count, " +
+        "is_execution_tree_released = excluded.is_execution_tree_released, " +
+        "path_state_count = excluded.path_state_count, " +
+        "path_condition_count = excluded.path_condition_count, " +
+        "are_path_conditions_released = excluded.are_path_conditions_released";
 
     public static void insertOrUpdate(Iterable<Iteration> iterations) {
-        for (Iteration iteration : iterations) {
-            insertOrUpdate(iteration);
-        }
+        inTransaction(() -> {
+            for (Iteration iteration : iterations) {
+                insertOrUpdate(iteration);
+            }
+        });
     }
 
     public static void insertOrUpdate(Iteration iteration) {
-        try (
-            Connection conn = connect();
-            PreparedStatement ps = conn.prepareStatement(
-                INSERT_OR_UPDATE,
-                PreparedStatement.RETURN_GENERATED_KEYS
-            )
-        ) {
-            ps.setObject(1, iteration.id);
-            ps.setObject(2, iteration.runId);
-            ps.setObject(3, iteration.iteration);
-            ps.setObject(4, iteration.result == null ? null : iteration.result.toString());
-            ps.setObject(5, iteration.hasTimedOut);
-            ps.setObject(6, iteration.isDepthLimited);
-            ps.setObject(7, iteration.hasUif);
-            ps.setObject(8, iteration.partitionCount);
-            ps.setObject(9, iteration.runtime);
-            ps.setObject(10, iteration.errors);
-            ps.execute();
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE, PreparedStatement.RETURN_GENERATED_KEYS);
+                ps.setObject(1, iteration.id);
+                ps.setObject(2, iteration.runId);
+                ps.setObject(3, iteration.iteration);
+                ps.setObject(4, iteration.result == null ? null : iteration.result.toString());
+                ps.setObject(5, iteration.hasTimedOut);
+                ps.setObject(6, iteration.isDepthLimited);
+                ps.setObject(7, iteration.hasUif);
+                ps.setObject(8, iteration.partitionCount);
+                ps.setObject(9, iteration.runtime);
+                ps.setObject(10, iteration.errors);
+                ps.setObject(11, iteration.memoryBudget);
+                ps.setObject(12, iteration.peakUsedMemory);
+                ps.setObject(13, iteration.executionTreeNodeCount);
+                ps.setObject(14, iteration.isExecutionTreeReleased);
+                ps.setObject(15, iteration.pathStateCount);
+                ps.setObject(16, iteration.pathConditionCount);
+                ps.setObject(17, iteration.arePathConditionsReleased);
+                ps.execute();
 
-            if (iteration.id == null) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    iteration.id = rs.getInt(1);
+                if (iteration.id == null) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        iteration.id = rs.getInt(1);
+                    }
                 }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
     }
 }
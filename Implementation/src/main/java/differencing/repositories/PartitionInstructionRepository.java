@@ -2,7 +2,6 @@ package differencing.repositories;
 
 import differencing.models.PartitionInstruction;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -28,35 +27,47 @@ public class PartitionInstructionRepository extends Repository {
         "choice = excluded.choice";
 
     public static void insertOrUpdate(Iterable<PartitionInstruction> partitionInstructions) {
-        for (PartitionInstruction partitionInstruction: partitionInstructions) {
-            insertOrUpdate(partitionInstruction);
-        }
+        // The IDs of the inserted rows aren't needed by anyone, so all
+        // rows can be written as a single batch in a single transaction.
+        inTransaction(() -> {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE);
+                for (PartitionInstruction partitionInstruction : partitionInstructions) {
+                    setParameters(ps, partitionInstruction);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     public static void insertOrUpdate(PartitionInstruction partitionInstruction) {
-        try (
-            Connection conn = connect();
-            PreparedStatement ps = conn.prepareStatement(
-                INSERT_OR_UPDATE,
-                PreparedStatement.RETURN_GENERATED_KEYS
-            )
-        ) {
-            ps.setObject(1, partitionInstruction.id);
-            ps.setObject(2, partitionInstruction.partitionId);
-            ps.setObject(3, partitionInstruction.instructionId);
-            ps.setObject(4, partitionInstruction.version);
-            ps.setObject(5, partitionInstruction.executionIndex);
-            ps.setObject(6, partitionInstruction.state);
-            ps.setObject(7, partitionInstruction.choice);
-            ps.execute();
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE, PreparedStatement.RETURN_GENERATED_KEYS);
+                setParameters(ps, partitionInstruction);
+                ps.execute();
 
-            if (partitionInstruction.id == null) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    partitionInstruction.id = rs.getInt(1);
+                if (partitionInstruction.id == null) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        partitionInstruction.id = rs.getInt(1);
+                    }
                 }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
     }
+
+    private static void setParameters(PreparedStatement ps, PartitionInstruction partitionInstruction) throws SQLException {
+        ps.setObject(1, partitionInstruction.id);
+        ps.setObject(2, partitionInstruction.partitionId);
+        ps.setObject(3, partitionInstruction.instructionId);
+        ps.setObject(4, partitionInstruction.version);
+        ps.setObject(5, partitionInstruction.executionIndex);
+        ps.setObject(6, partitionInstruction.state);
+        ps.setObject(7, partitionInstruction.choice);
+    }
 }
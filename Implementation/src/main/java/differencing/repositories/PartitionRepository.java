@@ -2,7 +2,6 @@ package differencing.repositories;
 
 import differencing.models.Partition;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -14,29 +13,31 @@ public class PartitionRepository extends Repository {
         "AND partition = ?";
 
     public static Integer getId(Partition partition) {
-        try (
-            Connection conn = connect();
-            PreparedStatement ps = conn.prepareStatement(SELECT_ID)
-        ) {
-            ps.setObject(1, partition.iterationId);
-            ps.setObject(2, partition.partition);
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(SELECT_ID);
+                ps.setObject(1, partition.iterationId);
+                ps.setObject(2, partition.partition);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt(1);
+                    }
                 }
-            }
 
-            return null;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+                return null;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
         }
     }
 
     public static void insertOrUpdate(Iterable<Partition> partitions) {
-        for (Partition partition: partitions) {
-            insertOrUpdate(partition);
-        }
+        inTransaction(() -> {
+            for (Partition partition: partitions) {
+                insertOrUpdate(partition);
+            }
+        });
     }
 
     public static void insertOrUpdate(Partition partition) {
@@ -106,39 +107,42 @@ public class PartitionRepository extends Repository {
 
     private static void insertOrUpdateFull(Partition partition) {
         assert partition.result != null;
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(INSERT_OR_UPDATE_FULL)) {
-            ps.setObject(1, partition.id);
-            ps.setObject(2, partition.iterationId);
-            ps.setObject(3, partition.partition);
-            ps.setObject(4, partition.result.toString());
-            ps.setObject(5, partition.pcResult == null ? null : partition.pcResult.status.toInt());
-            ps.setObject(6, partition.pcResult == null ? null : partition.pcResult.model);
-            ps.setObject(7, partition.pcResult == null ? null : partition.pcResult.reasonUnknown);
-            ps.setObject(8, partition.pcResult == null ? null : partition.pcResult.statistics);
-            ps.setObject(9, partition.neqResult == null ? null : partition.neqResult.status.toInt());
-            ps.setObject(10, partition.neqResult == null ? null : partition.neqResult.model);
-            ps.setObject(11, partition.neqResult == null ? null : partition.neqResult.v1Result);
-            ps.setObject(12, partition.neqResult == null ? null : partition.neqResult.v2Result);
-            ps.setObject(13, partition.neqResult == null ? null : partition.neqResult.reasonUnknown);
-            ps.setObject(14, partition.neqResult == null ? null : partition.neqResult.statistics);
-            ps.setObject(15, partition.eqResult == null ? null : partition.eqResult.status.toInt());
-            ps.setObject(16, partition.eqResult == null ? null : partition.eqResult.model);
-            ps.setObject(17, partition.eqResult == null ? null : partition.eqResult.v1Result);
-            ps.setObject(18, partition.eqResult == null ? null : partition.eqResult.v2Result);
-            ps.setObject(19, partition.eqResult == null ? null : partition.eqResult.reasonUnknown);
-            ps.setObject(20, partition.eqResult == null ? null : partition.eqResult.statistics);
-            ps.setObject(21, partition.hasUif);
-            ps.setObject(22, partition.hasUifPc);
-            ps.setObject(23, partition.hasUifV1);
-            ps.setObject(24, partition.hasUifV2);
-            ps.setObject(25, partition.constraintCount);
-            ps.setObject(26, partition.runtime);
-            ps.setObject(27, partition.errors);
-            ps.execute();
-
-            // TODO: Get + set ID if inserted.
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE_FULL);
+                ps.setObject(1, partition.id);
+                ps.setObject(2, partition.iterationId);
+                ps.setObject(3, partition.partition);
+                ps.setObject(4, partition.result.toString());
+                ps.setObject(5, partition.pcResult == null ? null : partition.pcResult.status.toInt());
+                ps.setObject(6, partition.pcResult == null ? null : partition.pcResult.model);
+                ps.setObject(7, partition.pcResult == null ? null : partition.pcResult.reasonUnknown);
+                ps.setObject(8, partition.pcResult == null ? null : partition.pcResult.statistics);
+                ps.setObject(9, partition.neqResult == null ? null : partition.neqResult.status.toInt());
+                ps.setObject(10, partition.neqResult == null ? null : partition.neqResult.model);
+                ps.setObject(11, partition.neqResult == null ? null : partition.neqResult.v1Result);
+                ps.setObject(12, partition.neqResult == null ? null : partition.neqResult.v2Result);
+                ps.setObject(13, partition.neqResult == null ? null : partition.neqResult.reasonUnknown);
+                ps.setObject(14, partition.neqResult == null ? null : partition.neqResult.statistics);
+                ps.setObject(15, partition.eqResult == null ? null : partition.eqResult.status.toInt());
+                ps.setObject(16, partition.eqResult == null ? null : partition.eqResult.model);
+                ps.setObject(17, partition.eqResult == null ? null : partition.eqResult.v1Result);
+                ps.setObject(18, partition.eqResult == null ? null : partition.eqResult.v2Result);
+                ps.setObject(19, partition.eqResult == null ? null : partition.eqResult.reasonUnknown);
+                ps.setObject(20, partition.eqResult == null ? null : partition.eqResult.statistics);
+                ps.setObject(21, partition.hasUif);
+                ps.setObject(22, partition.hasUifPc);
+                ps.setObject(23, partition.hasUifV1);
+                ps.setObject(24, partition.hasUifV2);
+                ps.setObject(25, partition.constraintCount);
+                ps.setObject(26, partition.runtime);
+                ps.setObject(27, partition.errors);
+                ps.execute();
+
+                // TODO: Get + set ID if inserted.
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
         }
     }
 
@@ -152,25 +156,41 @@ public class PartitionRepository extends Repository {
         "ON CONFLICT DO NOTHING;";
 
     private static void insertOrUpdatePartial(Partition partition) {
-        try (
-            Connection conn = connect();
-            PreparedStatement ps = conn.prepareStatement(
-                INSERT_OR_UPDATE_PARTIAL,
-                PreparedStatement.RETURN_GENERATED_KEYS
-            )
-        ) {
-            ps.setObject(1, partition.id);
-            ps.setObject(2, partition.iterationId);
-            ps.setObject(3, partition.partition);
-            ps.execute();
-
-            if (partition.id == null) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    partition.id = rs.getInt(1);
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE_PARTIAL, PreparedStatement.RETURN_GENERATED_KEYS);
+                ps.setObject(1, partition.id);
+                ps.setObject(2, partition.iterationId);
+                ps.setObject(3, partition.partition);
+                ps.execute();
+
+                if (partition.id == null) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        partition.id = rs.getInt(1);
+                    }
                 }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static final String UPDATE_PARTITION_NR = "" +
+        "UPDATE partition SET partition = ? " +
+        "WHERE iteration_id = ? " +
+        "AND partition = ?";
+
+    public static void updatePartitionNr(int iterationId, int oldPartitionNr, int newPartitionNr) {
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(UPDATE_PARTITION_NR);
+                ps.setObject(1, newPartitionNr);
+                ps.setObject(2, iterationId);
+                ps.setObject(3, oldPartitionNr);
+                ps.execute();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
     }
 }
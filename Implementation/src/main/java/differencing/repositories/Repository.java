@@ -6,21 +6,189 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 public abstract class Repository {
     public static final Path DB_PATH = Paths.get("analysis/results/sqlite.db");
 
+    // All repositories share a single, long-lived connection (and its cached
+    // prepared statements), which is why every use of the connection and of
+    // the statements has to synchronize on this lock. This also allows the
+    // shutdown hooks of the runners to write to the DB while the main thread
+    // is still running. Transactions hold the lock until they are finished,
+    // so the writes of other threads can't end up in (or end) them.
+    protected static final Object LOCK = new Object();
+
+    private static Connection connection = null;
+    private static final Map<String, PreparedStatement> statements = new HashMap<>();
+    private static int transactionDepth = 0;
+    private static boolean isRollbackOnly = false;
+
     protected static Connection connect() {
+        synchronized (LOCK) {
+            try {
+                if (connection == null || connection.isClosed()) {
+                    SQLiteConfig config = new SQLiteConfig();
+                    config.enforceForeignKeys(true);
+                    config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+                    config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+                    // Runs in other processes (e.g., of BenchmarkOrchestrator
+                    // or ParallelDifferencing) might write to the same DB at the
+                    // same time. Transactions take the write lock right away,
+                    // otherwise a transaction that read before it writes fails
+                    // immediately (without waiting) when another one committed.
+                    config.setBusyTimeout(30000);
+                    config.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+                    Properties properties = config.toProperties();
+
+                    connection = DriverManager.getConnection("jdbc:sqlite:" + DB_PATH, properties);
+                    statements.clear();
+                    transactionDepth = 0;
+                }
+                return connection;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    protected static PreparedStatement prepare(String sql) {
+        return prepare(sql, PreparedStatement.NO_GENERATED_KEYS);
+    }
+
+    protected static PreparedStatement prepare(String sql, int autoGeneratedKeys) {
+        synchronized (LOCK) {
+            Connection conn = connect();
+            String key = autoGeneratedKeys + ":" + sql;
+            try {
+                PreparedStatement ps = statements.get(key);
+                if (ps == null) {
+                    ps = conn.prepareStatement(sql, autoGeneratedKeys);
+                    statements.put(key, ps);
+                }
+                ps.clearParameters();
+                return ps;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Executes the given writes in a transaction on the shared connection,
+     * which is committed if they succeed and rolled back if they throw. The
+     * calling thread holds the lock of the connection for the whole
+     * transaction. Transactions can be nested, only the outermost one
+     * actually commits (or rolls back if any of the nested ones failed).
+     */
+    public static void inTransaction(Runnable writes) {
+        synchronized (LOCK) {
+            beginTransaction();
+            boolean hasSucceeded = false;
+            try {
+                writes.run();
+                hasSucceeded = true;
+            } finally {
+                if (hasSucceeded) {
+                    commit();
+                } else {
+                    rollback();
+                }
+            }
+        }
+    }
+
+    private static void beginTransaction() {
         try {
-            SQLiteConfig config = new SQLiteConfig();
-            config.enforceForeignKeys(true);
-            Properties properties = config.toProperties();
+            Connection conn = connect();
+            if (transactionDepth == 0) {
+                conn.setAutoCommit(false);
+                isRollbackOnly = false;
+            }
+            transactionDepth++;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void commit() {
+        if (transactionDepth == 0) {
+            return;
+        }
+        if (isRollbackOnly) {
+            rollback();
+            if (transactionDepth == 0) {
+                throw new RuntimeException("The transaction was rolled back because a nested transaction failed.");
+            }
+            return;
+        }
+        transactionDepth--;
+        if (transactionDepth == 0) {
+            try {
+                connection.commit();
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                rollbackConnection();
+                throw new RuntimeException(e);
+            }
+        }
+    }
 
-            return DriverManager.getConnection("jdbc:sqlite:" + DB_PATH, properties);
+    private static void rollback() {
+        if (transactionDepth == 0) {
+            return;
+        }
+        transactionDepth--;
+        if (transactionDepth == 0) {
+            rollbackConnection();
+        } else {
+            isRollbackOnly = true;
+        }
+    }
+
+    private static void rollbackConnection() {
+        isRollbackOnly = false;
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Closes the shared connection. Later calls to the repositories
+     * transparently open a new connection.
+     */
+    public static void close() {
+        synchronized (LOCK) {
+            if (connection == null) {
+                return;
+            }
+            try {
+                if (!connection.isClosed()) {
+                    // Only a transaction of this thread can still be open
+                    // here, and it's not finished, so it's not committed.
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                    }
+                    for (PreparedStatement ps : statements.values()) {
+                        ps.close();
+                    }
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            } finally {
+                connection = null;
+                statements.clear();
+                transactionDepth = 0;
+                isRollbackOnly = false;
+            }
+        }
+    }
 }
@@ -2,10 +2,11 @@ package differencing.repositories;
 
 import differencing.models.Run;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class RunRepository extends Repository {
     private static final String INSERT_OR_UPDATE = "" +
@@ -34,32 +35,57 @@ public class RunRepository extends Repository {
         "errors = excluded.errors";
 
     public static void insertOrUpdate(Run run) {
-        try (
-            Connection conn = connect();
-            PreparedStatement ps = conn.prepareStatement(
-                INSERT_OR_UPDATE,
-                PreparedStatement.RETURN_GENERATED_KEYS
-            )
-        ) {
-            ps.setObject(1, run.id);
-            ps.setObject(2, run.benchmark);
-            ps.setObject(3, run.result == null ? null : run.result.toString());
-            ps.setObject(4, run.hasTimedOut);
-            ps.setObject(5, run.isDepthLimited);
-            ps.setObject(6, run.hasUif);
-            ps.setObject(7, run.iterationCount);
-            ps.setObject(8, run.resultIteration);
-            ps.setObject(9, run.runtime);
-            ps.setObject(10, run.errors);
-            ps.execute();
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE, PreparedStatement.RETURN_GENERATED_KEYS);
+                ps.setObject(1, run.id);
+                ps.setObject(2, run.benchmark);
+                ps.setObject(3, run.result == null ? null : run.result.toString());
+                ps.setObject(4, run.hasTimedOut);
+                ps.setObject(5, run.isDepthLimited);
+                ps.setObject(6, run.hasUif);
+                ps.setObject(7, run.iterationCount);
+                ps.setObject(8, run.resultIteration);
+                ps.setObject(9, run.runtime);
+                ps.setObject(10, run.errors);
+                ps.execute();
 
-            if (run.id == null) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    run.id = rs.getInt(1);
+                if (run.id == null) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        run.id = rs.getInt(1);
+                    }
                 }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static final String SELECT_AVERAGE_RUNTIMES = "" +
+        "SELECT r.benchmark, s.tool, s.run_timeout, AVG(r.runtime) " +
+        "FROM run AS r " +
+        "INNER JOIN settings AS s ON s.run_id = r.id " +
+        "WHERE r.runtime IS NOT NULL " +
+        "GROUP BY r.benchmark, s.tool, s.run_timeout";
+
+    /**
+     * @return Average runtime (in seconds) of the finished runs, keyed by
+     * "[benchmark] [tool] [run timeout]", e.g., "Airy/MAX/Eq PASDA-base 300".
+     */
+    public static Map<String, Double> getAverageRuntimes() {
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(SELECT_AVERAGE_RUNTIMES);
+                Map<String, Double> runtimes = new HashMap<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        runtimes.put(rs.getString(1) + " " + rs.getString(2) + " " + rs.getInt(3), rs.getDouble(4));
+                    }
+                }
+                return runtimes;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
     }
 
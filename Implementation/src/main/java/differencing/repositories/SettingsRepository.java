@@ -2,7 +2,6 @@ package differencing.repositories;
 
 import differencing.models.Settings;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
@@ -25,25 +24,27 @@ public class SettingsRepository extends Repository {
         "depth_limit = excluded.depth_limit";
 
     public static void insertOrUpdate(Iterable<Settings> settings) {
-        for (Settings setting : settings) {
-            insertOrUpdate(setting);
-        }
+        inTransaction(() -> {
+            for (Settings setting : settings) {
+                insertOrUpdate(setting);
+            }
+        });
     }
 
     public static void insertOrUpdate(Settings settings) {
-        try (
-            Connection conn = connect();
-            PreparedStatement ps = conn.prepareStatement(INSERT_OR_UPDATE)
-        ) {
-            ps.setObject(1, settings.runId);
-            ps.setObject(2, settings.tool);
-            ps.setObject(3, settings.runTimeout);
-            ps.setObject(4, settings.iterationTimeout);
-            ps.setObject(5, settings.solverTimeout);
-            ps.setObject(6, settings.depthLimit);
-            ps.execute();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE);
+                ps.setObject(1, settings.runId);
+                ps.setObject(2, settings.tool);
+                ps.setObject(3, settings.runTimeout);
+                ps.setObject(4, settings.iterationTimeout);
+                ps.setObject(5, settings.solverTimeout);
+                ps.setObject(6, settings.depthLimit);
+                ps.execute();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
         }
     }
 }
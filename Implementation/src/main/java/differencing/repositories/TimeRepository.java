@@ -2,7 +2,6 @@ package differencing.repositories;
 
 import differencing.models.Time;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -28,35 +27,47 @@ public class TimeRepository extends Repository {
         "is_missing = excluded.is_missing";
 
     public static void insertOrUpdate(Iterable<Time> times) {
-        for (Time time : times) {
-            insertOrUpdate(time);
-        }
+        // The IDs of the inserted rows aren't needed by anyone, so all
+        // rows can be written as a single batch in a single transaction.
+        inTransaction(() -> {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE);
+                for (Time time : times) {
+                    setParameters(ps, time);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
     }
 
     public static void insertOrUpdate(Time time) {
-        try (
-            Connection conn = connect();
-            PreparedStatement ps = conn.prepareStatement(
-                INSERT_OR_UPDATE,
-                PreparedStatement.RETURN_GENERATED_KEYS
-            )
-        ) {
-            ps.setObject(1, time.id);
-            ps.setObject(2, time.runId);
-            ps.setObject(3, time.topic);
-            ps.setObject(4, time.task);
-            ps.setObject(5, time.runtime);
-            ps.setObject(6, time.step);
-            ps.setObject(7, time.isMissing);
-            ps.execute();
+        synchronized (LOCK) {
+            try {
+                PreparedStatement ps = prepare(INSERT_OR_UPDATE, PreparedStatement.RETURN_GENERATED_KEYS);
+                setParameters(ps, time);
+                ps.execute();
 
-            if (time.id == null) {
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    time.id = rs.getInt(1);
+                if (time.id == null) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        time.id = rs.getInt(1);
+                    }
                 }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
     }
+
+    private static void setParameters(PreparedStatement ps, Time time) throws SQLException {
+        ps.setObject(1, time.id);
+        ps.setObject(2, time.runId);
+        ps.setObject(3, time.topic);
+        ps.setObject(4, time.task);
+        ps.setObject(5, time.runtime);
+        ps.setObject(6, time.step);
+        ps.setObject(7, time.isMissing);
+    }
 }
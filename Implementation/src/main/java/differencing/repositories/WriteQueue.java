@@ -0,0 +1,229 @@
+package differencing.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Write-behind queue for DB writes that happen during the symbolic execution
+ * (i.e., in JPF listener callbacks). Writes are executed in submission order
+ * by a single writer thread, which executes all writes that are waiting in
+ * the queue in one transaction (which is rolled back if any of them fails).
+ * If the queue is full, {@link #submit} blocks until the writer thread has
+ * caught up. Before the DB connection is closed, e.g., by a shutdown hook,
+ * the queue has to be {@link #shutdown() shut down}.
+ * <p>
+ * The capacity of the queue can be set with:
+ * java -Ddifferencing.write-queue-capacity=1024 -jar ...
+ * A capacity of 0 executes all writes synchronously on the calling thread.
+ */
+public class WriteQueue {
+    private static final int CAPACITY = Integer.getInteger("differencing.write-queue-capacity", 1024);
+
+    private static BlockingQueue<Runnable> queue = null;
+    private static Thread writer = null;
+    private static boolean isShutdown = false;
+    private static volatile Throwable failure = null;
+
+    public static void submit(Runnable write) {
+        if (CAPACITY <= 0) {
+            write.run();
+            return;
+        }
+
+        throwIfFailed();
+
+        // The submission is synchronized with shutdown(), so no write can
+        // be added to the queue after the writer thread has been stopped.
+        synchronized (WriteQueue.class) {
+            while (isShutdown) {
+                awaitReset();
+            }
+            put(write);
+        }
+    }
+
+    /**
+     * Blocks until all writes that were submitted before the call to this
+     * method have been executed. Rethrows the first exception thrown by any
+     * of the writes (if any).
+     */
+    public static void flush() {
+        if (CAPACITY <= 0) {
+            return;
+        }
+
+        Marker marker = new Marker(false);
+        synchronized (WriteQueue.class) {
+            if (writer == null) {
+                throwIfFailed();
+                return;
+            }
+            put(marker);
+        }
+        marker.await();
+
+        throwIfFailed();
+    }
+
+    /**
+     * Stops accepting writes, executes all writes that were submitted
+     * before, and stops the writer thread, e.g., before a shutdown hook
+     * closes the DB connection. Threads that submit writes afterwards (e.g.,
+     * the symbolic execution that is still running while the JVM shuts
+     * down) are blocked until the queue is {@link #reset()}. Failed writes
+     * are reported by the next call to {@link #flush()}.
+     */
+    public static void shutdown() {
+        Marker marker = new Marker(true);
+        Thread stoppedWriter;
+        synchronized (WriteQueue.class) {
+            isShutdown = true;
+            if (writer == null) {
+                return;
+            }
+            put(marker);
+            stoppedWriter = writer;
+            writer = null;
+            queue = null;
+        }
+        marker.await();
+        try {
+            stoppedWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Shuts down the queue (see {@link #shutdown()}), discards any failure
+     * that wasn't reported yet, and accepts writes again, e.g., for the next
+     * job of a BenchmarkDaemon.
+     */
+    public static void reset() {
+        shutdown();
+        synchronized (WriteQueue.class) {
+            isShutdown = false;
+            failure = null;
+            WriteQueue.class.notifyAll();
+        }
+    }
+
+    private static void awaitReset() {
+        try {
+            WriteQueue.class.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static synchronized BlockingQueue<Runnable> getQueue() {
+        if (writer == null) {
+            BlockingQueue<Runnable> writes = new ArrayBlockingQueue<>(CAPACITY);
+            queue = writes;
+            writer = new Thread(() -> drain(writes), "db-writer");
+            // Durability is ensured by the explicit flushes and shutdowns of
+            // the runners, so the writer thread must not keep the JVM alive
+            // by itself.
+            writer.setDaemon(true);
+            writer.start();
+        }
+        return queue;
+    }
+
+    private static void put(Runnable write) {
+        try {
+            getQueue().put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void drain(BlockingQueue<Runnable> queue) {
+        List<Runnable> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+
+            List<Marker> markers = new ArrayList<>();
+            List<Runnable> writes = new ArrayList<>();
+            for (Runnable write : batch) {
+                if (write instanceof Marker) {
+                    markers.add((Marker) write);
+                } else {
+                    writes.add(write);
+                }
+            }
+            batch.clear();
+
+            // All writes of a batch are executed in one transaction, which is
+            // rolled back as a whole if any of the writes fails.
+            try {
+                Repository.inTransaction(() -> writes.forEach(Runnable::run));
+            } catch (Throwable e) {
+                fail(e);
+            }
+
+            // The markers are released even if the batch failed, so that
+            // threads waiting in flush() or shutdown() are never stuck.
+            boolean isStopped = false;
+            for (Marker marker : markers) {
+                marker.run();
+                isStopped |= marker.isStop;
+            }
+            if (isStopped) {
+                return;
+            }
+        }
+    }
+
+    private static void fail(Throwable e) {
+        Throwable first = failure;
+        if (first == null) {
+            failure = e;
+        } else {
+            first.addSuppressed(e);
+        }
+    }
+
+    private static void throwIfFailed() {
+        Throwable e = failure;
+        if (e != null) {
+            failure = null;
+            throw new RuntimeException("Asynchronous DB write failed.", e);
+        }
+    }
+
+    /** Released by the writer thread once all writes before it have been executed. */
+    private static class Marker implements Runnable {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final boolean isStop;
+
+        private Marker(boolean isStop) {
+            this.isStop = isStop;
+        }
+
+        @Override
+        public void run() {
+            this.latch.countDown();
+        }
+
+        private void await() {
+            try {
+                this.latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package differencing.transformer;
+
+import differencing.domain.Error;
+import differencing.domain.*;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates a canonical (prefix notation) string representation of one or
+ * more models in which all variables and uninterpreted functions are
+ * renamed in the order of their first occurrence. Two queries that only
+ * differ in the names of their variables / functions therefore have the
+ * same canonical string.
+ * <p>
+ * All models passed to a single call of {@link #transform(Model...)} share
+ * the same renaming, which is available via {@link #getRenaming()}.
+ */
+public class ModelToCanonicalStringTransformer extends ModelVisitor {
+    private final Map<String, String> renaming = new LinkedHashMap<>();
+    private StringBuilder sb;
+
+    public String transform(Model... models) {
+        this.renaming.clear();
+        this.sb = new StringBuilder();
+        for (Model model : models) {
+            model.accept(this);
+            this.sb.append(';');
+        }
+        return this.sb.toString();
+    }
+
+    /** @return Mapping from original to canonical names. */
+    public Map<String, String> getRenaming() {
+        return Collections.unmodifiableMap(this.renaming);
+    }
+
+    @Override
+    public void preVisit(Operation operation) {
+        this.sb.append('(');
+    }
+
+    @Override
+    public void postVisit(Operation operation) {
+        this.sb.append(')');
+    }
+
+    @Override
+    public void preVisit(Operator operator) {
+        this.sb.append(operator.name());
+    }
+
+    @Override
+    public void preVisit(ConstantInteger constant) {
+        this.sb.append(" i:").append(constant.value);
+    }
+
+    @Override
+    public void preVisit(ConstantReal constant) {
+        this.sb.append(" r:").append(Double.toHexString(constant.value));
+    }
+
+    @Override
+    public void preVisit(ConstantString constant) {
+        this.sb.append(" s:").append(constant.value.length()).append(':').append(constant.value);
+    }
+
+    @Override
+    public void preVisit(VariableInteger variable) {
+        this.sb.append(" vi:").append(this.rename(variable.name, "$v"));
+    }
+
+    @Override
+    public void preVisit(VariableReal variable) {
+        this.sb.append(" vr:").append(this.rename(variable.name, "$v"));
+    }
+
+    @Override
+    public void preVisit(VariableString variable) {
+        this.sb.append(" vs:").append(this.rename(variable.name, "$v"));
+    }
+
+    @Override
+    public void preVisit(SymbolicIntegerFunction function) {
+        this.sb.append(" (fi:").append(this.rename(function.name, "$f"));
+    }
+
+    @Override
+    public void postVisit(SymbolicIntegerFunction function) {
+        this.sb.append(')');
+    }
+
+    @Override
+    public void preVisit(SymbolicRealFunction function) {
+        this.sb.append(" (fr:").append(this.rename(function.name, "$f"));
+    }
+
+    @Override
+    public void postVisit(SymbolicRealFunction function) {
+        this.sb.append(')');
+    }
+
+    @Override
+    public void preVisit(SymbolicStringFunction function) {
+        this.sb.append(" (fs:").append(this.rename(function.name, "$f"));
+    }
+
+    @Override
+    public void postVisit(SymbolicStringFunction function) {
+        this.sb.append(')');
+    }
+
+    @Override
+    public void preVisit(Error error) {
+        String message = String.valueOf(error.message);
+        this.sb.append(" (error ").append(error.type).append(' ')
+            .append(message.length()).append(':').append(message).append(')');
+    }
+
+    private String rename(String name, String prefix) {
+        return this.renaming.computeIfAbsent(name, n -> prefix + this.renaming.size());
+    }
+}
@@ -1,17 +1,30 @@
 package differencing.transformer;
 
+import com.google.common.collect.MapMaker;
 import com.microsoft.z3.*;
 import differencing.domain.*;
 import differencing.domain.Error;
 import differencing.domain.Model;
 
-import java.util.Arrays;
-import java.util.Stack;
+import java.util.*;
 
 public class ModelToZ3Transformer extends ModelVisitor {
     private final Context context;
     private final Stack<Expr<?>> stack = new Stack<>();
 
+    // The declarations of the z3 built-in functions (sin, cos, ...) of the
+    // context. They reference the context, so they are kept per transformer
+    // (rather than in a static cache) to not keep the context alive.
+    private final Map<Operator, FuncDecl<RealSort>> builtIns = new EnumMap<>(Operator.class);
+
+    // The z3 expressions of the conjunctions (AND operations) that were
+    // already transformed. The PC models of successive partitions share
+    // the chain of conjunctions of their common prefix, so only the new
+    // conjuncts of a PC have to be transformed. The keys are compared by
+    // identity and only weakly referenced, so models that are no longer
+    // used can be garbage collected.
+    private final Map<Model, Expr<BoolSort>> conjunctions = new MapMaker().weakKeys().makeMap();
+
     public ModelToZ3Transformer(Context context) {
         this.context = context;
     }
@@ -31,11 +44,55 @@ public class ModelToZ3Transformer extends ModelVisitor {
     public Expr<?> transform(Model model) {
         if (model == null) {
             return this.context.mkTrue();
-        } else {
+        }
+
+        // Walk down the chain of conjunctions (left-nested, as created by
+        // SpfToModelTransformer) until an already transformed one is found.
+        Stack<Operation> newConjunctions = new Stack<>();
+        Model rest = model;
+        Expr<?> expr = null;
+        while (isConjunction(rest)) {
+            expr = this.conjunctions.get(rest);
+            if (expr != null) {
+                break;
+            }
+            newConjunctions.push((Operation) rest);
+            rest = ((Operation) rest).left;
+        }
+
+        if (expr == null) {
+            expr = this.visit(rest);
+        }
+
+        while (!newConjunctions.isEmpty()) {
+            Operation conjunction = newConjunctions.pop();
+            Expr<?> right = this.visit(conjunction.right);
+            Expr<BoolSort> and = this.context.mkAnd((Expr<BoolSort>) expr, (Expr<BoolSort>) right);
+            this.conjunctions.put(conjunction, and);
+            expr = and;
+        }
+
+        return expr;
+    }
+
+    private Expr<?> visit(Model model) {
+        try {
             model.accept(this);
             assert this.stack.size() == 1;
             return this.stack.pop();
+        } finally {
+            // The transformer is reused, so don't leave any partial
+            // results behind if the transformation fails.
+            this.stack.clear();
+        }
+    }
+
+    private static boolean isConjunction(Model model) {
+        if (!(model instanceof Operation)) {
+            return false;
         }
+        Operation operation = (Operation) model;
+        return operation.op == Operator.AND && operation.left != null && operation.right != null;
     }
 
     @Override
@@ -97,22 +154,28 @@ public class ModelToZ3Transformer extends ModelVisitor {
                 expr = this.context.mkPower(this.context.mkReal("2.718281828459045"), (Expr<? extends RealSort>) left);
                 break;
             case LOG:
+                // z3 doesn't have a built-in log function, so log is
+                // intentionally left as an uninterpreted function. ARDiff
+                // does the same, so our results stay comparable with ARDiff's.
+                expr = this.context.mkApp(
+                    this.context.mkFuncDecl(
+                        operation.op.toString(),
+                        this.context.mkRealSort(),
+                        this.context.mkRealSort()
+                    ),
+                    left
+                );
+                break;
             case SIN:
             case COS:
             case TAN:
             case ASIN:
             case ACOS:
             case ATAN:
+                expr = this.context.mkApp(this.getBuiltIn(operation.op), left);
+                break;
             case ATAN2:
-                 expr = this.context.mkApp(
-                     this.context.mkFuncDecl(
-                         operation.op.toString(),
-                         this.context.mkRealSort(),
-                         this.context.mkRealSort()
-                     ),
-                     left
-                 );
-                 break;
+                // z3 doesn't have a built-in atan2 function.
             default:
                 // For operations for which we DON'T KNOW we don't support them, throw a
                 // RuntimeException. This should produce an ERROR classification.
@@ -196,6 +259,24 @@ public class ModelToZ3Transformer extends ModelVisitor {
         throw new RuntimeException("Unable to transform error '" + error + "' to z3.");
     }
 
+    private FuncDecl<RealSort> getBuiltIn(Operator op) {
+        // The Java API of z3 doesn't offer a way to create applications of
+        // built-in functions such as sin(...). Using this.context.mkFuncDecl
+        // instead would create a new (uninterpreted) function that shadows
+        // the built-in one. So, we parse a minimal query that uses the
+        // built-in function once and take the interpreted declaration from
+        // the parsed application. The declarations are cached, so the
+        // parsing only happens once per function and transformer.
+        FuncDecl<RealSort> decl = this.builtIns.get(op);
+        if (decl == null) {
+            String query = "(declare-fun x () Real) (assert (= (" + op + " x) 0.0))";
+            BoolExpr assertion = this.context.parseSMTLIB2String(query, null, null, null, null)[0];
+            decl = (FuncDecl<RealSort>) assertion.getArgs()[0].getFuncDecl();
+            this.builtIns.put(op, decl);
+        }
+        return decl;
+    }
+
     private Expr<?>[] popArgs(int n) {
         Expr<?>[] args = new Expr<?>[n];
         for (int i = n - 1; i >= 0; i--) {
@@ -2,11 +2,22 @@ package differencing.transformer;
 
 import differencing.domain.Error;
 import differencing.domain.*;
+import com.google.common.collect.MapMaker;
 import gov.nasa.jpf.symbc.numeric.ConstraintExpressionVisitor;
 
+import java.util.Map;
 import java.util.Stack;
 
 public class SpfToModelTransformer {
+    // The models of the constraint chains that were already transformed, by
+    // their first constraint. SPF prepends new constraints to the PC and
+    // shares the remaining chain with the PC of the parent state, so only
+    // the newly prepended constraints of a PC have to be transformed. The
+    // keys are compared by identity and only weakly referenced, so chains
+    // that are no longer part of any PC can be garbage collected.
+    private final Map<gov.nasa.jpf.symbc.numeric.Constraint, TransformedChain> chains =
+        new MapMaker().weakKeys().makeMap();
+
     public Expression transform(gov.nasa.jpf.symbc.numeric.PathCondition pathCondition) {
         if (pathCondition == null || pathCondition.header == null) {
             return null;
@@ -28,9 +39,41 @@ public class SpfToModelTransformer {
             return null;
         }
 
-        ConstraintExpressionFactoryVisitor visitor = new ConstraintExpressionFactoryVisitor();
-        constraint.accept(visitor);
-        return visitor.getExpression();
+        Stack<gov.nasa.jpf.symbc.numeric.Constraint> newConstraints = new Stack<>();
+        Expression chain = null;
+        for (gov.nasa.jpf.symbc.numeric.Constraint c = constraint; c != null; c = c.and) {
+            TransformedChain transformed = this.chains.get(c);
+            if (transformed != null && transformed.and == c.and) {
+                chain = transformed.expression;
+                break;
+            }
+            newConstraints.push(c);
+        }
+
+        // Same structure as the visitor creates: (and AND constraint).
+        while (!newConstraints.isEmpty()) {
+            gov.nasa.jpf.symbc.numeric.Constraint c = newConstraints.pop();
+            Expression conjunct = this.transformConjunct(c);
+            chain = chain == null ? conjunct : new Operation(chain, Operator.AND, conjunct);
+            this.chains.put(c, new TransformedChain(c.and, chain));
+        }
+
+        return chain;
+    }
+
+    /**
+     * Transforms only the given constraint, i.e., without
+     * the constraints that are conjoined to it (constraint.and).
+     */
+    public Expression transformConjunct(gov.nasa.jpf.symbc.numeric.Constraint constraint) {
+        if (constraint == null) {
+            return null;
+        }
+
+        Expression left = this.transform(constraint.getLeft());
+        Expression right = this.transform(constraint.getRight());
+        Operator op = Operator.get(constraint.getComparator().toString());
+        return new Operation(left, op, right);
     }
 
     public Expression transform(gov.nasa.jpf.symbc.string.StringConstraint constraint) {
@@ -62,6 +105,18 @@ public class SpfToModelTransformer {
         return new Error("Error", error.getDetails());
     }
 
+    private static class TransformedChain {
+        // The rest of the chain at the time of the transformation, in case
+        // the chain is modified afterwards (e.g., by appending conjuncts).
+        private final gov.nasa.jpf.symbc.numeric.Constraint and;
+        private final Expression expression;
+
+        private TransformedChain(gov.nasa.jpf.symbc.numeric.Constraint and, Expression expression) {
+            this.and = and;
+            this.expression = expression;
+        }
+    }
+
     private static class ConstraintExpressionFactoryVisitor extends ConstraintExpressionVisitor {
         private final Stack<Expression> stack = new Stack<>();
 
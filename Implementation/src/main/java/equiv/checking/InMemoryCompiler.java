@@ -0,0 +1,172 @@
+package equiv.checking;
+
+import gov.nasa.jpf.jvm.MemoryClassFileContainer;
+import org.apache.commons.lang.SystemUtils;
+
+import javax.tools.*;
+import java.io.*;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Compiles the programs that are only executed by JPF (i.e., the instrumented
+ * programs and the differencing drivers) in memory. A single compiler and
+ * file manager are reused for all compilations, and the compiled classes are
+ * served to JPF directly from a {@link MemoryClassFileContainer} instead of
+ * being written to and re-read from target/classes.
+ * <p>
+ * Classes that were compiled in memory are visible to later compilations,
+ * e.g., the differencing driver can refer to the instrumented programs.
+ * <p>
+ * Enable with:
+ * java -Dequiv.checking.in-memory-compilation=true -jar ...
+ */
+public class InMemoryCompiler {
+    public static final boolean IS_ENABLED = Boolean.getBoolean("equiv.checking.in-memory-compilation");
+
+    /** Name of the container, for the JPF configuration (vm.memory_classpath). */
+    public static final String CONTAINER_NAME = "equiv.checking";
+
+    private static final MemoryClassFileContainer container = MemoryClassFileContainer.getContainer(CONTAINER_NAME);
+
+    private static JavaCompiler compiler = null;
+    private static StandardJavaFileManager standardFileManager = null;
+
+    public static synchronized void compile(File... files) throws IOException {
+        if (compiler == null) {
+            compiler = ToolProvider.getSystemJavaCompiler();
+            standardFileManager = compiler.getStandardFileManager(null, null, null);
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
+        MemoryFileManager fileManager = new MemoryFileManager(standardFileManager);
+
+        List<String> classpathParts = Arrays.asList(ProjectPaths.classpath, ProjectPaths.jpf_core_jar, ProjectPaths.jpf_symbc_jar);
+        String classpath = String.join(SystemUtils.IS_OS_WINDOWS ? ";" : ":", classpathParts);
+        List<String> options = Arrays.asList("-g", "-cp", classpath);
+        Iterable<? extends JavaFileObject> cpu = standardFileManager.getJavaFileObjects(files);
+        boolean success = compiler.getTask(null, fileManager, diagnosticCollector, options, null, cpu).call();
+        if (!success) {
+            // One diagnostic per line, e.g., "Foo.java:12: cannot find symbol symbol: variable x".
+            StringBuilder message = new StringBuilder("Compilation error:");
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnosticCollector.getDiagnostics()) {
+                message.append(System.lineSeparator());
+                if (diagnostic.getSource() != null) {
+                    message.append(diagnostic.getSource().getName()).append(':').append(diagnostic.getLineNumber()).append(": ");
+                }
+                message.append(diagnostic.getMessage(null).replaceAll("\\s*\\R\\s*", " "));
+            }
+            throw new IOException(message.toString());
+        }
+
+        // Only publish the classes once the compilation has succeeded.
+        for (ClassFile classFile : fileManager.classFiles) {
+            container.putClassFile(classFile.className, classFile.toByteArray());
+        }
+    }
+
+    /**
+     * Removes all classes that were compiled in memory and closes the file
+     * manager, which caches the contents of the class path (e.g., the
+     * classes of a previous benchmark in target/classes).
+     */
+    public static synchronized void reset() throws IOException {
+        container.getClassFiles().clear();
+        if (standardFileManager != null) {
+            standardFileManager.close();
+            standardFileManager = null;
+            compiler = null;
+        }
+    }
+
+    /**
+     * Writes all classes that were compiled in memory to the given directory,
+     * e.g., for JPF runs in other JVMs.
+     */
+    public static synchronized void writeClassFiles(String directory) throws IOException {
+        for (Map.Entry<String, byte[]> entry : container.getClassFiles().entrySet()) {
+            Path path = Paths.get(directory, entry.getKey().replace('.', File.separatorChar) + ".class");
+            path.getParent().toFile().mkdirs();
+            Files.write(path, entry.getValue());
+        }
+    }
+
+    private static class ClassFile extends SimpleJavaFileObject {
+        private final String className;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private ClassFile(String className) {
+            super(URI.create("memory:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+        }
+
+        private ClassFile(String className, byte[] bytes) {
+            this(className);
+            this.bytes.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            this.bytes.reset();
+            return this.bytes;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(this.bytes.toByteArray());
+        }
+
+        private byte[] toByteArray() {
+            return this.bytes.toByteArray();
+        }
+    }
+
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final List<ClassFile> classFiles = new ArrayList<>();
+
+        private MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            ClassFile classFile = new ClassFile(className);
+            this.classFiles.add(classFile);
+            return classFile;
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+            Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+            if (location != StandardLocation.CLASS_PATH || !kinds.contains(JavaFileObject.Kind.CLASS)) {
+                return files;
+            }
+
+            // In-memory classes shadow the (possibly outdated) ones on disk.
+            Map<String, JavaFileObject> classes = new LinkedHashMap<>();
+            for (JavaFileObject file : files) {
+                classes.put(this.inferBinaryName(location, file), file);
+            }
+            for (Map.Entry<String, byte[]> entry : container.getClassFiles().entrySet()) {
+                String className = entry.getKey();
+                int index = className.lastIndexOf('.');
+                String classPackage = index == -1 ? "" : className.substring(0, index);
+                if (classPackage.equals(packageName) || (recurse && classPackage.startsWith(packageName + "."))) {
+                    classes.put(className, new ClassFile(className, entry.getValue()));
+                }
+            }
+            return classes.values();
+        }
+
+        @Override
+        public String inferBinaryName(Location location, JavaFileObject file) {
+            if (file instanceof ClassFile) {
+                return ((ClassFile) file).className;
+            }
+            return super.inferBinaryName(location, file);
+        }
+    }
+}
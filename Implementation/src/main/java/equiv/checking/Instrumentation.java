@@ -297,6 +297,6 @@ public class Instrumentation implements Utils{
 		FileWriter writer = new FileWriter(newFile);
 		writer.write(newProgram);
 		writer.close();
-		compile(ProjectPaths.classpath,newFile);
+		compileForJpf(newFile);
 	}
 }
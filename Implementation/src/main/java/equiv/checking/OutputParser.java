@@ -13,8 +13,28 @@ import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class OutputParser {
+    // Flags that were recorded while the tools were running, keyed by the
+    // class name of the new version (e.g., "InewVSE1"). Recorded flags take
+    // precedence over the ones that are extracted from the output files.
+    private static final Map<String, Boolean> DEPTH_LIMITED = new ConcurrentHashMap<>();
+    private static final Map<String, Boolean> UIF = new ConcurrentHashMap<>();
+
+    public static void recordDepthLimited(String newClassName, boolean isDepthLimited) {
+        DEPTH_LIMITED.put(newClassName, isDepthLimited);
+    }
+
+    public static void recordUif(String newClassName, boolean hasUif) {
+        UIF.put(newClassName, hasUif);
+    }
+
+    public static void reset() {
+        DEPTH_LIMITED.clear();
+        UIF.clear();
+    }
+
     public static Map<Integer, Iteration> readIterations(Run run, String tool, String errors, boolean isTimeout) throws IOException {
         Path benchmarkPath = Paths.get("..", "benchmarks", run.benchmark);
         Path outputFilePath = benchmarkPath.resolve("outputs").resolve(tool + ".txt");
@@ -117,6 +137,11 @@ public class OutputParser {
             return true;
         }
 
+        Boolean isRecordedDepthLimited = DEPTH_LIMITED.get("InewV" + tool + iteration);
+        if (isRecordedDepthLimited != null) {
+            return isRecordedDepthLimited;
+        }
+
         Path instrumentedPath = benchmarkPath.resolve("instrumented");
         String depthLimitReached = "depth limit reached";
 
@@ -138,6 +163,11 @@ public class OutputParser {
     }
 
     private static Boolean hasUif(Path benchmarkPath, String tool, int iteration) throws IOException {
+        Boolean hasRecordedUif = UIF.get("InewV" + tool + iteration);
+        if (hasRecordedUif != null) {
+            return hasRecordedUif;
+        }
+
         Path toSolvePath = benchmarkPath.resolve("instrumented").resolve("InewV" + tool + iteration + "ToSolve.txt");
         if (!toSolvePath.toFile().exists()) {
             return null;
@@ -13,15 +13,28 @@ package equiv.checking;
 
 import com.microsoft.z3.*;
 import equiv.checking.symparser.SymParserSMTLib;
+import gov.nasa.jpf.symbc.numeric.Constraint;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
  * This class collects all the information from constraint solving
  **/
 public class SMTSummary {
+    // Solves the equivalence query by running the z3 binary on the query
+    // file instead of solving it in-process via the z3 Java API. Enable with:
+    // java -Dequiv.checking.z3-from-terminal=true -jar ...
+    private static final boolean IS_Z3_FROM_TERMINAL = Boolean.getBoolean("equiv.checking.z3-from-terminal");
+
+    // The query file (...ToSolve.txt) isn't needed for in-process solving,
+    // but OutputParser reads it to find out whether a run had UIFs. Disable with:
+    // java -Dequiv.checking.write-z3-query=false -jar ...
+    private static final boolean IS_WRITING_Z3_QUERY = Boolean.parseBoolean(System.getProperty("equiv.checking.write-z3-query", "true"));
+
     public BoolExpr summaryOld;
     public BoolExpr summaryNew;
     public Status status;
@@ -35,6 +48,8 @@ public class SMTSummary {
 
     public long z3time;
     public boolean noUFunctions;
+    public Boolean hasUif = null;
+    public Boolean isDepthLimited = null;
 
     public String toWrite;
     public String reasonUnknown;
@@ -46,6 +61,8 @@ public class SMTSummary {
     protected final String oldFileName;
     protected final String newFileName;
     protected final int timeout;
+    protected final SummaryCollector oldSummaryCollector;
+    protected final SummaryCollector newSummaryCollector;
 
     protected final File terminalFileOld;
     protected final File terminalFileNew;
@@ -62,10 +79,27 @@ public class SMTSummary {
     protected boolean isBoundEnough = true;
 
     public SMTSummary(String path, String oldFileName, String newFileName, int timeout) {
+        this(path, oldFileName, newFileName, timeout, null, null);
+    }
+
+    /**
+     * If summary collectors are given, the summaries are taken from them
+     * instead of being parsed from the JPF output files.
+     */
+    public SMTSummary(
+        String path,
+        String oldFileName,
+        String newFileName,
+        int timeout,
+        SummaryCollector oldSummaryCollector,
+        SummaryCollector newSummaryCollector
+    ) {
         this.path = path;
         this.oldFileName = oldFileName;
         this.newFileName = newFileName;
         this.timeout = timeout;
+        this.oldSummaryCollector = oldSummaryCollector;
+        this.newSummaryCollector = newSummaryCollector;
 
         this.terminalFileOld = new File(this.path + "/" + this.oldFileName + "Terminal.txt");
         this.terminalFileNew = new File(this.path + "/" + this.newFileName + "Terminal.txt");
@@ -83,24 +117,22 @@ public class SMTSummary {
      */
     public void checkEquivalence() throws IOException {
         this.context = new Context();
-        Tactic qfnra = this.context.mkTactic("qfnra-nlsat");
-        //Tactic simplifyTactic = context.mkTactic("ctx-solver-simplify");
-        Tactic simplifyTactic = this.context.mkTactic("simplify");
-        Tactic smtTactic = this.context.mkTactic("smt");
-        Tactic aig = this.context.mkTactic("aig");
-        Tactic solveeqs = this.context.mkTactic("solve-eqs");
-        Tactic or = this.context.andThen(smtTactic, this.context.parOr(simplifyTactic, solveeqs, aig, qfnra));
 
         this.parser = new SymParserSMTLib(this.context);
 
+        if (this.oldSummaryCollector != null && this.newSummaryCollector != null) {
+            this.isDepthLimited = this.oldSummaryCollector.isDepthLimited() || this.newSummaryCollector.isDepthLimited();
+            OutputParser.recordDepthLimited(this.newFileName, this.isDepthLimited);
+        }
+
         this.terminalInput += "The summary for the old method (in z3 stmt2 format)\n";
-        this.summaryOld = this.createSMTSummaryProgram(this.jpfOutputFileOld, this.parser);
+        this.summaryOld = this.createSMTSummaryProgram(this.oldSummaryCollector, this.jpfOutputFileOld, this.parser);
 
         if (!this.hasError) { //there was no error while running JPF symbc
             Files.write(this.terminalFileOld.toPath(), this.terminalInput.getBytes());
 
             this.terminalInput = "The summary for the new method\n";
-            this.summaryNew = this.createSMTSummaryProgram(this.jpfOutputFileNew, this.parser);
+            this.summaryNew = this.createSMTSummaryProgram(this.newSummaryCollector, this.jpfOutputFileNew, this.parser);
             Files.write(this.terminalFileNew.toPath(), this.terminalInput.getBytes());
         } else {
             this.summaryNew = null;
@@ -158,7 +190,76 @@ public class SMTSummary {
         this.toWrite += this.parser.declarations();
         this.toWrite += t.toString();
         this.toWrite += "\n-----------------------------------------------------------------------------------------------\n";
-        this.runZ3FromTerminal(this.parser);
+        this.hasUif = !this.noUFunctions;
+        OutputParser.recordUif(this.newFileName, this.hasUif);
+        if (IS_Z3_FROM_TERMINAL) {
+            this.runZ3FromTerminal(this.parser);
+        } else {
+            this.runZ3(this.parser);
+        }
+    }
+
+    /**
+     * This function runs Z3 constraint solver in-process on the summaries
+     * It uses the same strategy as the query for the terminal: (then smt (par-or simplify aig solve-eqs qfnra-nlsat))
+     * @param parser a Z3 parser object
+     */
+    public void runZ3(SymParserSMTLib parser) throws IOException {
+        this.declarations = this.createDeclarations(parser);
+        if (IS_WRITING_Z3_QUERY) {
+            Files.write(this.toSolveFile.toPath(), this.createQuery().getBytes());
+        }
+
+        Tactic tactic = this.context.andThen(
+            this.context.mkTactic("smt"),
+            this.context.parOr(
+                this.context.mkTactic("simplify"),
+                this.context.mkTactic("aig"),
+                this.context.mkTactic("solve-eqs"),
+                this.context.mkTactic("qfnra-nlsat")
+            )
+        );
+        Params params = this.context.mkParams();
+        params.add("timeout", this.timeout);
+        this.solver = this.context.mkSolver(tactic);
+        this.solver.setParameters(params);
+
+        Expr<?> ret = parser.varNames().get("Ret");
+        if (ret == null) {
+            this.status = Status.UNKNOWN;
+            this.reasonUnknown = "Error while running z3 : unknown constant Ret";
+            return;
+        }
+        Expr<?> oldRet = this.context.mkConst("Ret_1", ret.getSort());
+        Expr<?> newRet = this.context.mkConst("Ret_2", ret.getSort());
+        this.solver.add(
+            (BoolExpr) this.summaryOld.substitute(ret, oldRet),
+            (BoolExpr) this.summaryNew.substitute(ret, newRet),
+            this.context.mkNot(this.context.mkEq(oldRet, newRet))
+        );
+
+        long start = System.nanoTime();
+        try {
+            this.status = this.solver.check();
+        } catch (Z3Exception e) {
+            this.status = Status.UNKNOWN;
+            this.reasonUnknown = "Error while running z3 : " + e.getMessage();
+            return;
+        } finally {
+            long end = System.nanoTime();
+            this.z3time = end - start;
+        }
+
+        switch (this.status) {
+            case SATISFIABLE:
+                String model = this.solver.getModel().toString();
+                this.toWrite = "\n\n----------------------------------------------------Model (the counterexample in z3 smt2 format): ---------------------------------\n" + model
+                    + "\n-----------------------------------------------------------------------------------------------\n" + this.toWrite;
+                break;
+            case UNKNOWN:
+                this.reasonUnknown = this.solver.getReasonUnknown();
+                break;
+        }
     }
 
     /**
@@ -166,21 +267,8 @@ public class SMTSummary {
      * @param parser a Z3 parser object
      */
     public void runZ3FromTerminal(SymParserSMTLib parser) throws IOException {
-        this.declarations = parser.declarations() + parser.functionsDefinitions();
-        this.declarations = this.declarations.replaceAll(
-            "\\(declare-fun Ret \\(\\) (\\w+)\\)",
-            "(declare-fun Ret () $1)\n(declare-fun Ret_1 () $1)\n(declare-fun Ret_2 () $1)"
-        );
-        String oldSummary = this.firstSummary.replace(" Ret ", " Ret_1 ");
-        String newSummary = this.secondSummary.replace(" Ret ", " Ret_2 ");
-        String toSolve = this.declarations
-            + "(assert (" + oldSummary + "))\n"
-            + "(assert (" + newSummary + "))\n"
-            + "(assert (not (= Ret_1 Ret_2)))\n"
-            + "(check-sat-using (then smt (par-or simplify aig solve-eqs qfnra-nlsat)))\n"
-            + "(get-info:reason-unknown)\n"
-            + "(get-model)";
-        Files.write(this.toSolveFile.toPath(), toSolve.getBytes());
+        this.declarations = this.createDeclarations(parser);
+        Files.write(this.toSolveFile.toPath(), this.createQuery().getBytes());
 
         String mainCommand = ProjectPaths.z3 + " -smt2 " + this.toSolveFile.getPath() + " -T:" +this.timeout / 1000;
         long start = System.nanoTime();
@@ -228,6 +316,88 @@ public class SMTSummary {
         err.close();
     }
 
+    private String createDeclarations(SymParserSMTLib parser) {
+        String declarations = parser.declarations() + parser.functionsDefinitions();
+        return declarations.replaceAll(
+            "\\(declare-fun Ret \\(\\) (\\w+)\\)",
+            "(declare-fun Ret () $1)\n(declare-fun Ret_1 () $1)\n(declare-fun Ret_2 () $1)"
+        );
+    }
+
+    private String createQuery() {
+        // The summaries created from the collected path summaries are
+        // printed by z3, where Ret isn't necessarily followed by a space.
+        String oldSummary = this.firstSummary.replaceAll("(?<=[\\s(])Ret(?=[\\s)])", "Ret_1");
+        String newSummary = this.secondSummary.replaceAll("(?<=[\\s(])Ret(?=[\\s)])", "Ret_2");
+        return this.declarations
+            + "(assert (" + oldSummary + "))\n"
+            + "(assert (" + newSummary + "))\n"
+            + "(assert (not (= Ret_1 Ret_2)))\n"
+            + "(check-sat-using (then smt (par-or simplify aig solve-eqs qfnra-nlsat)))\n"
+            + "(get-info:reason-unknown)\n"
+            + "(get-model)";
+    }
+
+    private BoolExpr createSMTSummaryProgram(SummaryCollector collector, File jpfOutputFile, SymParserSMTLib parser) throws IOException {
+        if (collector != null) {
+            return this.createSMTSummaryProgram(collector, parser);
+        }
+        return this.createSMTSummaryProgram(jpfOutputFile, parser);
+    }
+
+    /**
+     * This functions creates a Z3 input from the path summaries collected while running JPF,
+     * i.e., directly from the constraints and return values of SPF without parsing them
+     * @param parser a Z3 parser that also creates the Z3 terms of SPF constraints
+     */
+    public BoolExpr createSMTSummaryProgram(SummaryCollector collector, SymParserSMTLib parser) {
+        this.hasReachedEnd = collector.hasReachedEnd();
+        this.isBoundEnough = true;
+        try {
+            List<BoolExpr> pathSummaries = new ArrayList<>();
+            for (SummaryCollector.PathSummary path : collector.getPathSummaries()) {
+                this.hasError = false;
+                if (path.result == null) {
+                    continue;
+                }
+                List<BoolExpr> pathConstraints = new ArrayList<>();
+                for (Constraint constraint : path.constraints) {
+                    if (this.isImpacted(SummaryCollector.getLineNumber(constraint))) {
+                        pathConstraints.add(parser.parseConstraint(constraint));
+                    }
+                }
+                if (this.isImpacted(path.returnLineNumber)) {
+                    pathConstraints.add(parser.parseReturn(path.returnType, path.result));
+                    pathSummaries.add(pathConstraints.size() == 1
+                        ? pathConstraints.get(0)
+                        : parser.context().mkAnd(pathConstraints.toArray(new BoolExpr[0])));
+                }
+            }
+            if (this.hasReachedEnd && this.hasError) {
+                this.isBoundEnough = false;
+            }
+            if (this.hasError || !this.hasReachedEnd) {
+                this.hasError = true;
+                return null;
+            }
+
+            BoolExpr summary = null;
+            if (!pathSummaries.isEmpty()) {
+                summary = pathSummaries.size() == 1
+                    ? pathSummaries.get(0)
+                    : parser.context().mkOr(pathSummaries.toArray(new BoolExpr[0]));
+            }
+            // The summaries are recorded without their outermost parentheses,
+            // like the ones created by joinSMT (see createQuery).
+            String text = summary == null ? null : summary.toString();
+            this.setSummary(text == null ? null : text.substring(1, text.length() - 1), parser);
+            return summary;
+        } catch (Exception e) {
+            this.hasError = true;
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * This functions creates a Z3 input from JPF output
      * @param parser a Z3 parser that works on strings
@@ -235,11 +405,10 @@ public class SMTSummary {
     public BoolExpr createSMTSummaryProgram(File jpfOutputFile, SymParserSMTLib parser) throws IOException {
         BufferedReader br = new BufferedReader(new FileReader(jpfOutputFile));
         String st;
-        Context context = parser.context();
         this.hasReachedEnd = false;
         this.isBoundEnough = true;
         try {
-            String previousSum = null, TotalSum = null;
+            List<String> pathSummaries = new ArrayList<>();
             while ((st = br.readLine()) != null) {
                 if (st.contains("Method Summaries")) {
                     if (this.hasError) {
@@ -253,7 +422,8 @@ public class SMTSummary {
                 if (st.contains("Summary")) {
                     this.hasError = false;
                     st = br.readLine();
-                    String prevPCs = null, currentPC = null, pathSummary = null;
+                    List<String> pathConstraints = new ArrayList<>();
+                    String pathSummary = null;
                     if (st != null) {
                         if (st.startsWith("PC is")) {
                             st = br.readLine();
@@ -263,68 +433,106 @@ public class SMTSummary {
                                 String constraint = obtainConstraint(st);
                                 //parsedConstraints.add(constraint);
                                 if (constraint != null) {
-                                    currentPC = parser.parseConstraint(constraint);
-                                    if (prevPCs != null) {
-                                        currentPC = "and ( " + prevPCs + ") ( " + currentPC + " )";
-                                    }
-                                    prevPCs = currentPC;
+                                    pathConstraints.add(parser.parseConstraint(constraint));
                                 }
                                 st = br.readLine();
                             } // I am return statement
                             if (st != null) {
                                 String returnConstraint = obtainConstraint(st);
                                 if (returnConstraint != null) {
-                                    String ret = parser.parseConstraint(returnConstraint);
-                                    if (currentPC != null) {
-                                        pathSummary = "and ( " + currentPC + " ) ( " + ret + " )";
-                                    } else {
-                                        pathSummary = ret;
-                                    }
-                                } else {
-                                    pathSummary = null;
+                                    pathConstraints.add(parser.parseConstraint(returnConstraint));
+                                    pathSummary = this.joinSMT("and", pathConstraints);
                                 }
                             }
                         }
                     }// we are done with the path summary of this path => pathSystem.out.println(index + pathSummary.toString());
-                    if (previousSum != null && pathSummary != null) {
-                        TotalSum = "or ( " + previousSum + ") ( " + pathSummary + " )";
-                        previousSum = TotalSum;
-                    } else if (previousSum == null && pathSummary != null) {
-                        previousSum = pathSummary;
-                        TotalSum = previousSum;
+                    if (pathSummary != null) {
+                        pathSummaries.add(pathSummary);
                     }
                 } //we update the total summary with the summary of this path
             }//we reach end of the file
 
-            if (this.hasError || !this.hasReachedEnd) {
-                this.hasError = true;
-                return null;
-            }
-            if (this.firstSummary.isEmpty()) {
-                this.firstSummary = TotalSum;
-            } else {
-                this.secondSummary = TotalSum;
-            }
-            if (TotalSum == null)
-                return null;
-            TotalSum = parser.functionsDefinitions() + "(assert ( " + TotalSum + " ))";
-            Object[] func = parser.varDecl().values().toArray();
-            Symbol[] symbols = new Symbol[func.length];
-            FuncDecl<?>[] functions = new FuncDecl[func.length];
-            for (int i = 0; i < functions.length; i++) {
-                symbols[i] = ((FuncDecl<?>) func[i]).getName();
-                functions[i] = (FuncDecl<?>) func[i];
-            }
-            this.terminalInput += TotalSum + "\n";
-
-            BoolExpr summary = context.parseSMTLIB2String(TotalSum, null, null, symbols, functions)[0];
-            return summary;
+            return this.createSMTSummaryProgram(pathSummaries, parser);
         } catch (Exception e) {
             this.hasError = true;
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * This functions combines the (parsed) path summaries of a program into a Z3 input
+     * @param parser a Z3 parser that works on strings
+     */
+    private BoolExpr createSMTSummaryProgram(List<String> pathSummaries, SymParserSMTLib parser) {
+        // The path summaries are parsed as separate assertions in one go,
+        // which are then combined into one flat n-ary or (instead of
+        // concatenating an ever-growing, nested string of binary or / and
+        // terms), which keeps the construction linear in the number of paths.
+        Context context = parser.context();
+        if (this.hasError || !this.hasReachedEnd) {
+            this.hasError = true;
+            return null;
+        }
+        String TotalSum = pathSummaries.isEmpty() ? null : this.joinSMT("or", pathSummaries);
+        this.setSummary(TotalSum, parser);
+        if (TotalSum == null)
+            return null;
+
+        BoolExpr[] pathExprs = this.parseSMT(pathSummaries, parser);
+        if (pathExprs.length == 1) {
+            return pathExprs[0];
+        }
+        return context.mkOr(pathExprs);
+    }
+
+    /**
+     * This is a helper method to record the (SMT-LIB) summary of a program for the query file and the terminal output
+     */
+    private void setSummary(String summary, SymParserSMTLib parser) {
+        if (this.firstSummary.isEmpty()) {
+            this.firstSummary = summary;
+        } else {
+            this.secondSummary = summary;
+        }
+        if (summary != null) {
+            this.terminalInput += parser.functionsDefinitions() + "(assert ( " + summary + " ))" + "\n";
+        }
+    }
+
+    /**
+     * This is a helper method to combine SMT terms with an n-ary operator
+     * @return e.g., "and ( a ) ( b ) ( c )" or just "a" for a single term
+     */
+    private String joinSMT(String operator, List<String> terms) {
+        if (terms.size() == 1) {
+            return terms.get(0);
+        }
+        StringBuilder sb = new StringBuilder(operator);
+        for (String term : terms) {
+            sb.append(" ( ").append(term).append(" )");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * This is a helper method to parse (path) summaries into Z3 expressions
+     * @return one expression per summary
+     */
+    private BoolExpr[] parseSMT(List<String> summaries, SymParserSMTLib parser) {
+        Object[] func = parser.varDecl().values().toArray();
+        Symbol[] symbols = new Symbol[func.length];
+        FuncDecl<?>[] functions = new FuncDecl[func.length];
+        for (int i = 0; i < functions.length; i++) {
+            symbols[i] = ((FuncDecl<?>) func[i]).getName();
+            functions[i] = (FuncDecl<?>) func[i];
+        }
+        StringBuilder toParse = new StringBuilder(parser.functionsDefinitions());
+        for (String summary : summaries) {
+            toParse.append("(assert ( ").append(summary).append(" ))\n");
+        }
+        return parser.context().parseSMTLIB2String(toParse.toString(), null, null, symbols, functions);
+    }
+
     /**
      * This functions returns eventual errors/exceptions from running JPF-symbc
      */
@@ -342,6 +550,16 @@ public class SMTSummary {
         return "";
     }
 
+    /**
+     * This is a helper method to filter the path summaries collected while running JPF
+     * (see obtainConstraint for the JPF output)
+     * @param lineNumber the line of a constraint or return statement
+     * @return whether the constraint or return statement is part of the summary
+     */
+    protected boolean isImpacted(int lineNumber) {
+        return true;
+    }
+
     /**
      * This is a helper method to parse a JPF constraint
      * @param st a JPF constraint as a string
@@ -6,6 +6,7 @@ import com.microsoft.z3.Expr;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 
 public interface SourceInstrumentation {
@@ -13,5 +14,15 @@ public interface SourceInstrumentation {
 
     String getNextToRefine(Context context, BoolExpr summaryOld, BoolExpr summaryNew, Map<String, Expr<?>> variables) throws IOException;
 
+    /**
+     * Same as above, but with the indexes of the summaries, if they were
+     * already built while the summaries were created (see SummaryIndex).
+     */
+    default String getNextToRefine(Context context, BoolExpr summaryOld, BoolExpr summaryNew, SummaryIndex indexOld, SummaryIndex indexNew) throws IOException {
+        Map<String, Expr<?>> variables = new HashMap<>(indexOld.getVariables());
+        variables.putAll(indexNew.getVariables());
+        return this.getNextToRefine(context, summaryOld, summaryNew, variables);
+    }
+
     void expandFunction(String statement, ArrayList<Integer> changes);
 }
@@ -0,0 +1,110 @@
+package equiv.checking;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.report.Publisher;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.symbc.SymbolicInstructionFactory;
+import gov.nasa.jpf.symbc.SymbolicListener;
+import gov.nasa.jpf.symbc.numeric.Constraint;
+import gov.nasa.jpf.symbc.numeric.Expression;
+import gov.nasa.jpf.symbc.numeric.LinearIntegerConstraint;
+import gov.nasa.jpf.symbc.numeric.LogicalORLinearIntegerConstraints;
+import gov.nasa.jpf.symbc.numeric.PathCondition;
+import gov.nasa.jpf.vm.Instruction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Symbolic listener that (in addition to printing them) collects the path
+ * summaries of the symbolic method while JPF is running, so that the
+ * summaries don't have to be parsed from the JPF output afterwards.
+ * <p>
+ * The summaries keep the constraints and return values of SPF itself, so
+ * SMTSummary can create the z3 terms directly from them (see
+ * {@link equiv.checking.symparser.SymParserSMTLib#parseConstraint(Constraint)}).
+ */
+public class SummaryCollector extends SymbolicListener {
+    private final List<PathSummary> pathSummaries = new ArrayList<>();
+
+    private boolean isDepthLimited = false;
+    private boolean hasReachedEnd = false;
+
+    public SummaryCollector(Config conf, JPF jpf) {
+        super(conf, jpf);
+    }
+
+    public List<PathSummary> getPathSummaries() {
+        return Collections.unmodifiableList(this.pathSummaries);
+    }
+
+    public boolean isDepthLimited() {
+        return this.isDepthLimited;
+    }
+
+    /** @return Whether JPF finished and published its results (i.e., didn't crash). */
+    public boolean hasReachedEnd() {
+        return this.hasReachedEnd;
+    }
+
+    @Override
+    protected void pathSummaryCreated(Instruction insn, PathCondition pc, String returnType, Expression result) {
+        // The conjuncts are copied, as the chain of a PC can still be
+        // extended after the summary has been created.
+        List<Constraint> constraints = new ArrayList<>();
+        if (pc != null) {
+            for (Constraint c = pc.header; c != null; c = c.and) {
+                constraints.add(c);
+            }
+        }
+        this.pathSummaries.add(new PathSummary(constraints, insn.getLineNumber(), returnType, result));
+    }
+
+    @Override
+    public void searchConstraintHit(Search search) {
+        super.searchConstraintHit(search);
+        if (search.getDepth() >= search.getDepthLimit()) {
+            this.isDepthLimited = true;
+        }
+    }
+
+    @Override
+    public void publishFinished(Publisher publisher) {
+        super.publishFinished(publisher);
+        // SymbolicListener only publishes its method summaries (which mark
+        // the end of the JPF output) if a solver is used.
+        String[] dp = SymbolicInstructionFactory.dp;
+        if (!dp[0].equalsIgnoreCase("no_solver") && !dp[0].equalsIgnoreCase("cvc3bitvec")) {
+            this.hasReachedEnd = true;
+        }
+    }
+
+    /** @return The line of the constraint as printed in the JPF output. */
+    public static int getLineNumber(Constraint c) {
+        if (c instanceof LogicalORLinearIntegerConstraints) {
+            List<LinearIntegerConstraint> list = ((LogicalORLinearIntegerConstraints) c).getList();
+            return list.isEmpty() ? c.getLineNumber() : list.get(0).getLineNumber();
+        }
+        return c.getLineNumber();
+    }
+
+    public static class PathSummary {
+        /** The conjuncts of the path condition (each without the constraints conjoined to it). */
+        public final List<Constraint> constraints;
+        /** The line of the return statement. */
+        public final int returnLineNumber;
+        /** The return type of the symbolic method, e.g., INT or REAL. */
+        public final String returnType;
+        /** The return value of the path (or null if it couldn't be determined). */
+        public final Expression result;
+
+        public PathSummary(List<Constraint> constraints, int returnLineNumber, String returnType, Expression result) {
+            this.constraints = constraints;
+            this.returnLineNumber = returnLineNumber;
+            this.returnType = returnType;
+            this.result = result;
+        }
+    }
+}
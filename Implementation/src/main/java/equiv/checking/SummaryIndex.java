@@ -0,0 +1,135 @@
+package equiv.checking;
+
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.FuncDecl;
+import org.apache.commons.lang3.tuple.MutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+/**
+ * Indexes the variables, uninterpreted function instances (UF_...) and
+ * function calls (AF_...) of a program summary, so they don't have to be
+ * collected from the (potentially huge) summary expression again whenever
+ * they are needed, e.g., for the refinement heuristics of GradDiff.
+ * <p>
+ * If the summary is built incrementally as a disjunction of path summaries,
+ * the path summaries can be added one by one as they are created. Z3 shares
+ * common subexpressions, so each path summary is traversed as a DAG (each
+ * AST node is visited only once), while the number of occurrences of each
+ * UF instance is still counted as in the (unshared) expression tree.
+ */
+public class SummaryIndex {
+    private final Map<String, Expr<?>> variables = new HashMap<>();
+    private final Map<String, Pair<FuncDecl<?>, HashSet<Expr<?>>>> functionsInstances = new HashMap<>();
+    private final Map<Expr<?>, Integer> uFunctions = new HashMap<>();
+    private final Set<Expr<?>> procCalls = new HashSet<>();
+
+    public static SummaryIndex of(Expr<?> summary) {
+        SummaryIndex index = new SummaryIndex();
+        index.add(summary);
+        return index;
+    }
+
+    /** @return The variables (all constants, except for UF_ and AF_ constants) by their name. */
+    public Map<String, Expr<?>> getVariables() {
+        return this.variables;
+    }
+
+    /** @return The declaration and all instances of each uninterpreted function, by its name. */
+    public Map<String, Pair<FuncDecl<?>, HashSet<Expr<?>>>> getFunctionsInstances() {
+        return this.functionsInstances;
+    }
+
+    /** @return The number of occurrences of each uninterpreted function instance. */
+    public Map<Expr<?>, Integer> getUFunctions() {
+        return this.uFunctions;
+    }
+
+    /** @return The function calls. */
+    public Set<Expr<?>> getProcCalls() {
+        return this.procCalls;
+    }
+
+    /**
+     * Adds the variables, function instances, and function calls of the
+     * given expression to the index, e.g., when it is or-ed to the summary.
+     */
+    public void add(Expr<?> expr) {
+        if (expr == null) {
+            return;
+        }
+
+        // The number of occurrences of each node in the expression tree is
+        // the number of paths from the root to the node in the DAG, which is
+        // computed by pushing the counts down in topological order.
+        List<Expr<?>> order = topologicalOrder(expr);
+        Map<Integer, Integer> occurrences = new HashMap<>();
+        occurrences.put(expr.getId(), 1);
+
+        for (Expr<?> node : order) {
+            int count = occurrences.get(node.getId());
+            this.addNode(node, count);
+            if (node.isApp()) {
+                for (Expr<?> arg : node.getArgs()) {
+                    occurrences.merge(arg.getId(), count, SummaryIndex::saturatedSum);
+                }
+            }
+        }
+    }
+
+    private void addNode(Expr<?> node, int count) {
+        if (!node.isApp()) {
+            return;
+        }
+
+        FuncDecl<?> func = node.getFuncDecl();
+        String funcName = func.getName().toString();
+
+        if (funcName.startsWith("UF_")) {
+            this.functionsInstances
+                .computeIfAbsent(funcName, name -> new MutablePair<>(func, new HashSet<>()))
+                .getValue()
+                .add(node);
+            this.uFunctions.merge(node, count, SummaryIndex::saturatedSum);
+        } else if (funcName.startsWith("AF_")) {
+            this.procCalls.add(node);
+        } else if (node.isConst()) {
+            this.variables.put(funcName, node);
+        }
+    }
+
+    /** @return All nodes of the DAG of the given expression, parents before children. */
+    private static List<Expr<?>> topologicalOrder(Expr<?> root) {
+        List<Expr<?>> postOrder = new ArrayList<>();
+        Set<Integer> entered = new HashSet<>();
+        Set<Integer> finished = new HashSet<>();
+        Deque<Expr<?>> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            Expr<?> node = stack.peek();
+            if (entered.add(node.getId())) {
+                if (node.isApp()) {
+                    for (Expr<?> arg : node.getArgs()) {
+                        if (!entered.contains(arg.getId())) {
+                            stack.push(arg);
+                        }
+                    }
+                }
+            } else {
+                stack.pop();
+                if (finished.add(node.getId())) {
+                    postOrder.add(node);
+                }
+            }
+        }
+
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
+    private static int saturatedSum(int a, int b) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) a + b);
+    }
+}
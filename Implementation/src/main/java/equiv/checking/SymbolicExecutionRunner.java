@@ -11,17 +11,29 @@
 //WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package equiv.checking;
 
+import differencing.ChildJvms;
 import differencing.IgnoreUnreachablePathsListener;
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.JPF;
-import gov.nasa.jpf.symbc.SymbolicListener;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class SymbolicExecutionRunner {
     /**
      * This class runs the symbolic execution with JPF-symbc
      **/
+
+    // Runs JPF on the old and new version concurrently. JPF keeps most of
+    // its state in static fields, so two JPF instances can't share a JVM;
+    // each version is therefore executed in its own child JVM whose output
+    // is written directly to the version's output files. Enable with:
+    // java -Dequiv.checking.parallel-symbolic-execution=true -jar ...
+    private static final boolean IS_PARALLEL = Boolean.getBoolean("equiv.checking.parallel-symbolic-execution");
+
     protected String oldFileName;
     protected String newFileName;
     protected String targetMethod;
@@ -35,6 +47,8 @@ public class SymbolicExecutionRunner {
     protected long minLong, maxLong;
     protected String packageName;
 
+    protected final Map<String, SummaryCollector> summaryCollectors = new HashMap<>();
+
     public SymbolicExecutionRunner(
         String path,
         String packageName,
@@ -92,6 +106,9 @@ public class SymbolicExecutionRunner {
             "search.depth_limit=" + this.bound + "\n" +
             "search.multiple_errors=true \n" +
             "search.class = .search.CustomSearch \n";
+        if (InMemoryCompiler.IS_ENABLED) {
+            fixed += "vm.memory_classpath=" + InMemoryCompiler.CONTAINER_NAME + "\n";
+        }
 
         File newFile = new File(path + this.oldFileName + ".jpf");
         newFile.getParentFile().mkdir();
@@ -145,8 +162,12 @@ public class SymbolicExecutionRunner {
      * This functions runs JPF on both programs
      */
     public void runningJavaPathFinder() throws IOException {
-        runningOnProgram(oldFileName);
-        runningOnProgram(newFileName);
+        if (IS_PARALLEL) {
+            runningOnProgramsInParallel(oldFileName, newFileName);
+        } else {
+            runningOnProgram(oldFileName);
+            runningOnProgram(newFileName);
+        }
     }
 
     /**
@@ -161,16 +182,77 @@ public class SymbolicExecutionRunner {
         System.setErr(new PrintStream(new BufferedOutputStream(new FileOutputStream(this.path + fileName + "JPFError.txt"))));
 
         try {
-            File configFile = new File(this.path + fileName + ".jpf");
-            Config config = JPF.createConfig(new String[]{configFile.getAbsolutePath()});
-            JPF jpf = new JPF(config);
-
-            jpf.addListener(new IgnoreUnreachablePathsListener(this.timeout / 1000));
-            jpf.addListener(new SymbolicListener(config, jpf));
-            jpf.run();
+            SummaryCollector collector = runJpf(this.path + fileName + ".jpf", this.timeout / 1000);
+            this.summaryCollectors.put(fileName, collector);
         } finally {
             System.setOut(systemOutputStream);
             System.setErr(systemErrorStream);
         }
     }
+
+    /**
+     * This function runs JPF on all programs at the same time, each in its own JVM
+     * @param fileNames the programs
+     */
+    public void runningOnProgramsInParallel(String... fileNames) throws IOException {
+        if (InMemoryCompiler.IS_ENABLED) {
+            // The child JVMs can only load the programs from disk.
+            InMemoryCompiler.writeClassFiles(ProjectPaths.classpath);
+        }
+
+        try (ChildJvms childJvms = new ChildJvms()) {
+            List<Process> processes = new ArrayList<>();
+            for (String fileName : fileNames) {
+                ProcessBuilder builder = new ProcessBuilder(ChildJvms.command(
+                    SymbolicExecutionRunner.class,
+                    new File(this.path + fileName + ".jpf").getAbsolutePath(),
+                    Integer.toString(this.timeout / 1000)
+                ));
+                builder.redirectOutput(new File(this.path + fileName + "JPFOutput.txt"));
+                builder.redirectError(new File(this.path + fileName + "JPFError.txt"));
+                processes.add(childJvms.start(builder));
+            }
+
+            for (int i = 0; i < processes.size(); i++) {
+                int exitCode = processes.get(i).waitFor();
+                if (exitCode != 0) {
+                    throw new RuntimeException(
+                        "Symbolic execution of '" + fileNames[i] + "' failed with exit code " + exitCode + " " +
+                        "(see " + this.path + fileNames[i] + "JPFError.txt)."
+                    );
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This function returns the path summaries that were collected while running JPF on a program
+     * @param fileName the program
+     * @return the collected summaries or null if JPF wasn't run in this JVM (i.e., in parallel mode)
+     */
+    public SummaryCollector getSummaryCollector(String fileName) {
+        return this.summaryCollectors.get(fileName);
+    }
+
+    private static SummaryCollector runJpf(String configPath, int solverTimeout) {
+        File configFile = new File(configPath);
+        Config config = JPF.createConfig(new String[]{configFile.getAbsolutePath()});
+        JPF jpf = new JPF(config);
+
+        SummaryCollector collector = new SummaryCollector(config, jpf);
+        jpf.addListener(new IgnoreUnreachablePathsListener(solverTimeout));
+        jpf.addListener(collector);
+        jpf.run();
+
+        return collector;
+    }
+
+    public static void main(String[] args) {
+        // Arguments: [config] [solver_timeout]
+        // Used by runningOnProgramsInParallel to run JPF in a child JVM.
+        runJpf(args[0], Integer.parseInt(args[1]));
+    }
 }
@@ -69,6 +69,19 @@ public interface Utils {
         }
     }
 
+    /**
+     * To compile a java program that is only executed by JPF (in memory if enabled, see InMemoryCompiler)
+     * @param newFile the program
+     * @throws IOException
+     */
+    default void compileForJpf(File newFile) throws IOException {
+        if (InMemoryCompiler.IS_ENABLED) {
+            InMemoryCompiler.compile(newFile);
+        } else {
+            compile(ProjectPaths.classpath, newFile);
+        }
+    }
+
     default ArrayList<String> copyProgram(String methodPath) throws Exception {
         File programFile = new File(methodPath);
         if(!programFile.exists()){ //error
@@ -13,9 +13,26 @@ package equiv.checking.symparser;
 
 import com.microsoft.z3.*;
 import equiv.checking.Utils;
+import gov.nasa.jpf.symbc.numeric.BinaryLinearIntegerExpression;
+import gov.nasa.jpf.symbc.numeric.BinaryNonLinearIntegerExpression;
+import gov.nasa.jpf.symbc.numeric.BinaryRealExpression;
+import gov.nasa.jpf.symbc.numeric.Comparator;
+import gov.nasa.jpf.symbc.numeric.Constraint;
+import gov.nasa.jpf.symbc.numeric.Expression;
+import gov.nasa.jpf.symbc.numeric.IntegerConstant;
+import gov.nasa.jpf.symbc.numeric.LinearIntegerConstraint;
+import gov.nasa.jpf.symbc.numeric.LogicalORLinearIntegerConstraints;
+import gov.nasa.jpf.symbc.numeric.MathRealExpression;
+import gov.nasa.jpf.symbc.numeric.Operator;
+import gov.nasa.jpf.symbc.numeric.RealConstant;
+import gov.nasa.jpf.symbc.numeric.SymbolicIntFunction;
+import gov.nasa.jpf.symbc.numeric.SymbolicInteger;
+import gov.nasa.jpf.symbc.numeric.SymbolicReal;
+import gov.nasa.jpf.symbc.numeric.SymbolicRealFunction;
 import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
+import java.math.BigDecimal;
 import java.util.*;
 
 
@@ -32,6 +49,9 @@ public class SymParserSMTLib {
 
     protected boolean noUFunctions;
 
+    // The declarations of the z3 built-in functions (sin, cos, ...), see parseBuiltIn.
+    protected final Map<String, FuncDecl<RealSort>> builtIns;
+
     /**
      * Add parsing arrays in parseElem
      * Consider <- in the parse formula as well ? it's basically , array[i] becomes i, check how to do mutation ??
@@ -46,6 +66,7 @@ public class SymParserSMTLib {
         this.mathFunctions = Utils.mathFunctions;
         this.noUFunctions = true;
         this.variablesDeclaration = new HashMap<>();
+        this.builtIns = new HashMap<>();
         initFunctionDefinitions();
     }
 
@@ -374,4 +395,220 @@ public class SymParserSMTLib {
             }
         }
     }
+
+    // The following methods create the z3 terms directly from the
+    // constraints and expressions of SPF (see SummaryCollector) instead of
+    // from their string representation. They use the same names, sorts,
+    // and (uninterpreted) functions as the string-based methods above and
+    // register the variables and functions in the same way, so both can be
+    // used with the declarations, varNames, and noUFunctions of the parser.
+
+    /**
+     * @param constraint a single conjunct of a path condition (the constraints conjoined to it are ignored)
+     */
+    public BoolExpr parseConstraint(Constraint constraint) {
+        if (constraint instanceof LogicalORLinearIntegerConstraints) {
+            List<LinearIntegerConstraint> list = ((LogicalORLinearIntegerConstraints) constraint).getList();
+            BoolExpr[] disjuncts = new BoolExpr[list.size()];
+            for (int i = 0; i < disjuncts.length; i++) {
+                disjuncts[i] = this.parseConstraint(list.get(i));
+            }
+            return this.context.mkOr(disjuncts);
+        }
+
+        Expr<?> left = this.parseExpression(constraint.getLeft());
+        Expr<?> right = this.parseExpression(constraint.getRight());
+        if (isReal(left) || isReal(right)) {
+            left = this.toReal(left);
+            right = this.toReal(right);
+        }
+        Comparator comparator = constraint.getComparator();
+        switch (comparator) {
+            case EQ:
+                return this.context.mkEq(left, right);
+            case NE:
+                return this.context.mkNot(this.context.mkEq(left, right));
+            case LT:
+                return this.context.mkLt((Expr<? extends ArithSort>) left, (Expr<? extends ArithSort>) right);
+            case LE:
+                return this.context.mkLe((Expr<? extends ArithSort>) left, (Expr<? extends ArithSort>) right);
+            case GT:
+                return this.context.mkGt((Expr<? extends ArithSort>) left, (Expr<? extends ArithSort>) right);
+            case GE:
+                return this.context.mkGe((Expr<? extends ArithSort>) left, (Expr<? extends ArithSort>) right);
+            default:
+                throw new UnsupportedOperationException("Unsupported comparator '" + comparator + "'.");
+        }
+    }
+
+    /**
+     * @param returnType the return type of the symbolic method as printed by SPF, e.g., INT or REAL
+     * @param result the return value of a path
+     * @return Ret = result
+     */
+    public BoolExpr parseReturn(String returnType, Expression result) {
+        Expr<?> ret = this.variables.get(this.parseVar("Ret_0_SYM" + returnType).getValue());
+        Expr<?> value = this.parseExpression(result);
+        if (isReal(ret) || isReal(value)) {
+            ret = this.toReal(ret);
+            value = this.toReal(value);
+        }
+        return this.context.mkEq(ret, value);
+    }
+
+    public Expr<?> parseExpression(Expression expression) {
+        if (expression instanceof IntegerConstant) {
+            return this.context.mkInt(((IntegerConstant) expression).value);
+        }
+        if (expression instanceof RealConstant) {
+            double value = ((RealConstant) expression).value;
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new UnsupportedOperationException("Unsupported constant '" + value + "'.");
+            }
+            return this.context.mkReal(new BigDecimal(Double.toString(value)).toPlainString());
+        }
+        if (expression instanceof SymbolicInteger || expression instanceof SymbolicReal) {
+            // Without the solution, e.g., a_1_SYMINT instead of a_1_SYMINT[5].
+            return this.variables.get(this.parseVar(expression.stringPC()).getValue());
+        }
+        if (expression instanceof BinaryLinearIntegerExpression) {
+            BinaryLinearIntegerExpression e = (BinaryLinearIntegerExpression) expression;
+            return this.parseArithm(e.getOp(), e.getLeft(), e.getRight());
+        }
+        if (expression instanceof BinaryNonLinearIntegerExpression) {
+            BinaryNonLinearIntegerExpression e = (BinaryNonLinearIntegerExpression) expression;
+            return this.parseArithm(e.op, e.left, e.right);
+        }
+        if (expression instanceof BinaryRealExpression) {
+            BinaryRealExpression e = (BinaryRealExpression) expression;
+            return this.parseArithm(e.getOp(), e.getLeft(), e.getRight());
+        }
+        if (expression instanceof MathRealExpression) {
+            return this.parseMathFunc((MathRealExpression) expression);
+        }
+        if (expression instanceof SymbolicIntFunction) {
+            SymbolicIntFunction f = (SymbolicIntFunction) expression;
+            return this.parseFunc(f.getName(), f.getSymArgs(), this.context.mkIntSort());
+        }
+        if (expression instanceof SymbolicRealFunction) {
+            SymbolicRealFunction f = (SymbolicRealFunction) expression;
+            return this.parseFunc(f.getName(), f.getSymArgs(), this.context.mkRealSort());
+        }
+        throw new UnsupportedOperationException("Unsupported expression '" + expression + "'.");
+    }
+
+    protected Expr<?> parseArithm(Operator op, Expression leftExpression, Expression rightExpression) {
+        Expr<?> left = this.parseExpression(leftExpression);
+        Expr<?> right = this.parseExpression(rightExpression);
+        boolean isInteger = !isReal(left) && !isReal(right);
+        if (!isInteger) {
+            left = this.toReal(left);
+            right = this.toReal(right);
+        }
+        switch (op) {
+            case PLUS:
+                return this.context.mkAdd((Expr<? extends ArithSort>) left, (Expr<? extends ArithSort>) right);
+            case MINUS:
+                return this.context.mkSub((Expr<? extends ArithSort>) left, (Expr<? extends ArithSort>) right);
+            case MUL:
+                return this.context.mkMul((Expr<? extends ArithSort>) left, (Expr<? extends ArithSort>) right);
+            case DIV:
+                // Integer division for two integers, real division otherwise.
+                return this.context.mkDiv((Expr<? extends ArithSort>) left, (Expr<? extends ArithSort>) right);
+            case REM:
+                if (isInteger) {
+                    return this.context.mkMod((Expr<IntSort>) left, (Expr<IntSort>) right);
+                }
+                // The remainder of reals isn't supported (same as by the string parser).
+            default:
+                throw new UnsupportedOperationException("Unsupported operator '" + op + "'.");
+        }
+    }
+
+    protected Expr<?> parseMathFunc(MathRealExpression expression) {
+        Expr<RealSort> arg1 = this.toReal(this.parseExpression(expression.getArg1()));
+        switch (expression.getOp()) {
+            case SIN:
+            case COS:
+            case TAN:
+            case ASIN:
+            case ACOS:
+            case ATAN:
+                return this.context.mkApp(this.parseBuiltIn(expression.getOp().toString().trim()), arg1);
+            case EXP:
+                // See the definitions of exp, sqrt, and log in initFunctionDefinitions.
+                return this.context.mkPower(this.context.mkReal("2.718281828459045"), arg1);
+            case SQRT:
+                return this.context.mkPower(arg1, this.context.mkReal("0.5"));
+            case LOG:
+                return this.context.mkApp(
+                    this.context.mkFuncDecl("log", this.context.mkRealSort(), this.context.mkRealSort()),
+                    arg1
+                );
+            case POW:
+                return this.context.mkPower(arg1, this.toReal(this.parseExpression(expression.getArg2())));
+            default:
+                throw new UnsupportedOperationException("Unsupported function '" + expression.getOp() + "'.");
+        }
+    }
+
+    protected Expr<?> parseFunc(String func, Expression[] symArgs, Sort retS) {
+        if (func.startsWith("UF")) {
+            this.noUFunctions = false;
+        }
+        Expr<?>[] arguments = new Expr<?>[symArgs == null ? 0 : symArgs.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = this.parseExpression(symArgs[i]);
+        }
+
+        // Same as parseFunc(String): functions that are used with different
+        // numbers of arguments are declared with an additional '*'.
+        FuncDecl<?> f = null, funcDecl = this.variablesDeclaration.get(func);
+        if (funcDecl != null) {
+            if (funcDecl.getDomainSize() == arguments.length) {
+                f = funcDecl;
+            } else {
+                func += "*";
+            }
+        }
+
+        if (f == null) {
+            Sort[] typeArgs = new Sort[arguments.length];
+            String sort = "(";
+            for (int i = 0; i < arguments.length; i++) {
+                typeArgs[i] = arguments[i].getSort();
+                sort += typeArgs[i] + " ";
+            }
+            sort += ")";
+            f = this.context.mkFuncDecl(func, typeArgs, retS);
+            this.declarations += "(declare-fun " + func + " " + sort + " " + retS + ")\n";
+            this.variablesDeclaration.put(func, f);
+        }
+        return this.context.mkApp(f, arguments);
+    }
+
+    protected FuncDecl<RealSort> parseBuiltIn(String name) {
+        // The Java API of z3 can't create applications of built-in functions
+        // such as sin(...), so the declaration is taken from a parsed query
+        // (see ModelToZ3Transformer.getBuiltIn).
+        FuncDecl<RealSort> decl = this.builtIns.get(name);
+        if (decl == null) {
+            String query = "(declare-fun x () Real) (assert (= (" + name + " x) 0.0))";
+            BoolExpr assertion = this.context.parseSMTLIB2String(query, null, null, null, null)[0];
+            decl = (FuncDecl<RealSort>) assertion.getArgs()[0].getFuncDecl();
+            this.builtIns.put(name, decl);
+        }
+        return decl;
+    }
+
+    protected Expr<RealSort> toReal(Expr<?> expr) {
+        if (isReal(expr)) {
+            return (Expr<RealSort>) expr;
+        }
+        return this.context.mkInt2Real((Expr<IntSort>) expr);
+    }
+
+    protected static boolean isReal(Expr<?> expr) {
+        return expr.getSort() instanceof RealSort;
+    }
 }
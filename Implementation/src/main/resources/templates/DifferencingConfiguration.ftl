@@ -1,10 +1,16 @@
 <#-- @ftlvariable name="parameters" type="differencing.DifferencingParameters" -->
 <#-- @ftlvariable name="timeout" type="int" -->
 <#-- @ftlvariable name="depthLimit" type="int" -->
+<#-- @ftlvariable name="isStateMatching" type="boolean" -->
+<#-- @ftlvariable name="isPersistentHeap" type="boolean" -->
+<#-- @ftlvariable name="memoryClasspath" type="java.lang.String" -->
 
 target = ${parameters.targetNamespace}.${parameters.targetClassName}
 symbolic.method = ${parameters.targetNamespace}.${parameters.targetClassName}.run(${parameters.symbolicParameters})
 classpath=target/classes
+<#if memoryClasspath??>
+vm.memory_classpath=${memoryClasspath}
+</#if>
 symbolic.min_int=-100
 symbolic.max_int=100
 symbolic.min_long=-100
@@ -21,3 +27,13 @@ symbolic.string_dp_timeout_ms=${timeout?string.computer}
 search.depth_limit=${depthLimit?string.computer}
 search.multiple_errors=true
 search.class = .search.CustomSearch
+<#if isStateMatching>
+vm.storage.class = gov.nasa.jpf.vm.JenkinsStateSet
+<#else>
+vm.storage.class = nil
+</#if>
+<#if isPersistentHeap>
+vm.heap.class = gov.nasa.jpf.vm.PSIMHeap
+<#else>
+vm.heap.class = gov.nasa.jpf.vm.OVHeap
+</#if>
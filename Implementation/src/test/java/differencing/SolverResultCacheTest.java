@@ -0,0 +1,119 @@
+package differencing;
+
+import com.microsoft.z3.Status;
+import differencing.domain.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SolverResultCacheTest {
+    private static final int TIMEOUT = 1000;
+
+    private File file;
+    private SolverResultCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("solver-result-cache", ".db");
+        this.cache = new SolverResultCache(this.file.getPath(), 100);
+    }
+
+    @After
+    public void tearDown() {
+        this.cache.close();
+        assertTrue(this.file.delete());
+    }
+
+    @Test
+    public void alphaEquivalentQueriesShareKey() {
+        SolverResultCache.Query query = this.cache.query("neq", false, pc("x", "y"), sum("x", "y"), sum("y", "x"));
+        this.cache.putEquivalenceResult(query, TIMEOUT, neqResult("x", "y"));
+
+        SolverResultCache.Query renamed = this.cache.query("neq", false, pc("a", "b"), sum("a", "b"), sum("b", "a"));
+        EquivalenceCheckResult result = this.cache.getEquivalenceResult(renamed, TIMEOUT);
+
+        assertNotNull(result);
+        assertEquals(Status.SATISFIABLE, result.status);
+    }
+
+    @Test
+    public void nonEquivalentQueriesDoNotShareKey() {
+        SolverResultCache.Query query = this.cache.query("neq", false, pc("x", "y"), sum("x", "y"), sum("y", "x"));
+        this.cache.putEquivalenceResult(query, TIMEOUT, neqResult("x", "y"));
+
+        // Swapped variables in the PC only, i.e., y > x instead of x > y.
+        assertNull(this.cache.getEquivalenceResult(
+            this.cache.query("neq", false, pc("y", "x"), sum("x", "y"), sum("y", "x")), TIMEOUT
+        ));
+        // Same variable twice instead of two different variables.
+        assertNull(this.cache.getEquivalenceResult(
+            this.cache.query("neq", false, pc("x", "y"), sum("x", "x"), sum("y", "x")), TIMEOUT
+        ));
+        // Different constant.
+        assertNull(this.cache.getEquivalenceResult(
+            this.cache.query("neq", false, pc("x", "y"), sum("x", "y"), new Operation(new VariableInteger("y"), Operator.PLUS, new ConstantInteger(1))), TIMEOUT
+        ));
+        // Different variable type.
+        assertNull(this.cache.getEquivalenceResult(
+            this.cache.query("neq", false, pc("x", "y"), sum("x", "y"), new Operation(new VariableReal("y"), Operator.PLUS, new VariableReal("x"))), TIMEOUT
+        ));
+        // Different kind of check.
+        assertNull(this.cache.getEquivalenceResult(
+            this.cache.query("eq", false, pc("x", "y"), sum("x", "y"), sum("y", "x")), TIMEOUT
+        ));
+        // Different solver mode.
+        assertNull(this.cache.getEquivalenceResult(
+            this.cache.query("neq", true, pc("x", "y"), sum("x", "y"), sum("y", "x")), TIMEOUT
+        ));
+    }
+
+    @Test
+    public void renamedModelsMapBack() {
+        SolverResultCache.Query query = this.cache.query("neq", false, pc("x", "y"), sum("x", "y"), sum("y", "x"));
+        this.cache.putEquivalenceResult(query, TIMEOUT, neqResult("x", "y"));
+
+        SolverResultCache.Query renamed = this.cache.query("neq", false, pc("a", "b"), sum("a", "b"), sum("b", "a"));
+        EquivalenceCheckResult result = this.cache.getEquivalenceResult(renamed, TIMEOUT);
+
+        assertEquals(neqResult("a", "b").model, result.model);
+        assertEquals("(+ a b)", result.v1Result);
+        assertEquals("(+ b a)", result.v2Result);
+
+        SolverResultCache.Query original = this.cache.query("neq", false, pc("x", "y"), sum("x", "y"), sum("y", "x"));
+        assertEquals(neqResult("x", "y").model, this.cache.getEquivalenceResult(original, TIMEOUT).model);
+    }
+
+    @Test
+    public void unknownResultsAreOnlyReusedForShorterTimeouts() {
+        SolverResultCache.Query query = this.cache.query("pc", false, pc("x", "y"));
+        this.cache.putReachabilityResult(query, TIMEOUT, new ReachabilityCheckResult(Status.UNKNOWN, null, "timeout", null));
+
+        assertNotNull(this.cache.getReachabilityResult(query, TIMEOUT));
+        assertNull(this.cache.getReachabilityResult(query, 2 * TIMEOUT));
+    }
+
+    private static Expression pc(String left, String right) {
+        return new Operation(new VariableInteger(left), Operator.GT, new VariableInteger(right));
+    }
+
+    private static Expression sum(String left, String right) {
+        return new Operation(new VariableInteger(left), Operator.PLUS, new VariableInteger(right));
+    }
+
+    private static EquivalenceCheckResult neqResult(String left, String right) {
+        String model = "(define-fun " + left + " () Int 1)\n(define-fun |" + right + "| () Int 0)";
+        return new EquivalenceCheckResult(
+            Status.SATISFIABLE,
+            model,
+            "(+ " + left + " " + right + ")",
+            "(+ " + right + " " + left + ")",
+            null,
+            null
+        );
+    }
+}